@@ -0,0 +1,347 @@
+package bstmap;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ *  A map kept as a left-leaning red-black tree.
+ *
+ *  Each node is a 2-node or, with a red left child, a 3-node of a 2-3
+ *  tree, so every path from the root to a null link passes the same number
+ *  of black links and the tree is never more than 2 lg N deep, whatever
+ *  the order of insertion. put() and remove() restore that shape with
+ *  rotations and color flips on the way back up from the key, so get(),
+ *  put() and remove() all take O(log N) time, and keys inserted in
+ *  increasing order build a balanced tree rather than a linked list.
+ *
+ *  Iteration is in increasing order of keys and keeps its own stack of the
+ *  left spine still to visit, so it needs no recursion. keySet() is a view
+ *  of the keys, not a copy. Assumes null keys will never be inserted.
+ *  @author Tsrigo
+ */
+public class BSTMap<K extends Comparable<K>, V> implements Map61B<K, V> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private class Node {
+        private final K key;
+        private V value;
+        private Node left;
+        private Node right;
+        /** The color of the link from the parent to this node. */
+        private boolean color;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.color = RED;
+        }
+    }
+
+    /* Instance Variables */
+    private Node root;
+    private int size;
+
+    /** Constructs an empty map. */
+    public BSTMap() {
+    }
+
+    /** Removes all of the mappings from this map. */
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        Node node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("null keys are not supported");
+        }
+        root = put(root, key, value);
+        root.color = BLACK;
+    }
+
+    /** Returns a view of the keys, in increasing order. */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return o != null && containsKey((K) o);
+            }
+
+            @Override
+            public Iterator<K> iterator() {
+                return BSTMap.this.iterator();
+            }
+        };
+    }
+
+    @Override
+    public V remove(K key) {
+        Node node = getNode(key);
+        if (node == null) {
+            return null;
+        }
+        V old = node.value;
+        removeKey(key);
+        return old;
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        Node node = getNode(key);
+        if (node == null || !(value == null ? node.value == null : value.equals(node.value))) {
+            return null;
+        }
+        V old = node.value;
+        removeKey(key);
+        return old;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /** Walks the keys in increasing order. */
+    private class KeyIterator implements Iterator<K> {
+        /** The nodes whose key and right subtree are still to be visited,
+         *  the next one on top. */
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+        KeyIterator() {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public K next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack.pop();
+            pushLeft(node.right);
+            return node.key;
+        }
+
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+    }
+
+    /** Returns the number of black links on every path from the root to a
+     *  null link, or -1 if paths differ or a red link leans right or
+     *  follows another. For tests. */
+    int blackHeight() {
+        return blackHeight(root, BLACK);
+    }
+
+    private int blackHeight(Node node, boolean parentColor) {
+        if (node == null) {
+            return 0;
+        }
+        if (isRed(node.right) || (node.color == RED && parentColor == RED)) {
+            return -1;
+        }
+        int left = blackHeight(node.left, node.color);
+        int right = blackHeight(node.right, node.color);
+        if (left < 0 || left != right) {
+            return -1;
+        }
+        return left + (node.color == BLACK ? 1 : 0);
+    }
+
+    /* ---------------------- Private methods ---------------------- */
+
+    /** Returns the node holding KEY, or null, without recursion. */
+    private Node getNode(K key) {
+        if (key == null) {
+            return null;
+        }
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Returns the subtree NODE with KEY mapped to VALUE. */
+    private Node put(Node node, K key, V value) {
+        if (node == null) {
+            size += 1;
+            return new Node(key, value);
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = put(node.left, key, value);
+        } else if (cmp > 0) {
+            node.right = put(node.right, key, value);
+        } else {
+            node.value = value;
+        }
+        return balance(node);
+    }
+
+    /** Removes KEY, which must be present. */
+    private void removeKey(K key) {
+        if (!isRed(root.left) && !isRed(root.right)) {
+            root.color = RED;
+        }
+        root = remove(root, key);
+        size -= 1;
+        if (root != null) {
+            root.color = BLACK;
+        }
+    }
+
+    /** Returns the subtree NODE without KEY, which it must hold. Keeps the
+     *  node it descends to from being a 2-node, so the key is removed from
+     *  a 3-node or 4-node at the bottom. */
+    private Node remove(Node node, K key) {
+        if (key.compareTo(node.key) < 0) {
+            if (!isRed(node.left) && !isRed(node.left.left)) {
+                node = moveRedLeft(node);
+            }
+            node.left = remove(node.left, key);
+        } else {
+            if (isRed(node.left)) {
+                node = rotateRight(node);
+            }
+            if (key.compareTo(node.key) == 0 && node.right == null) {
+                return null;
+            }
+            if (!isRed(node.right) && !isRed(node.right.left)) {
+                node = moveRedRight(node);
+            }
+            if (key.compareTo(node.key) == 0) {
+                Node min = node.right;
+                while (min.left != null) {
+                    min = min.left;
+                }
+                Node replacement = new Node(min.key, min.value);
+                replacement.left = node.left;
+                replacement.right = removeMin(node.right);
+                replacement.color = node.color;
+                node = replacement;
+            } else {
+                node.right = remove(node.right, key);
+            }
+        }
+        return balance(node);
+    }
+
+    /** Returns the subtree NODE without its least key. */
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return null;
+        }
+        if (!isRed(node.left) && !isRed(node.left.left)) {
+            node = moveRedLeft(node);
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    /** Makes NODE.left or one of its children red, given that NODE is red
+     *  and both NODE.left and NODE.left.left are black. */
+    private Node moveRedLeft(Node node) {
+        flipColors(node);
+        if (isRed(node.right.left)) {
+            node.right = rotateRight(node.right);
+            node = rotateLeft(node);
+            flipColors(node);
+        }
+        return node;
+    }
+
+    /** Makes NODE.right or one of its children red, given that NODE is red
+     *  and both NODE.right and NODE.right.left are black. */
+    private Node moveRedRight(Node node) {
+        flipColors(node);
+        if (isRed(node.left.left)) {
+            node = rotateRight(node);
+            flipColors(node);
+        }
+        return node;
+    }
+
+    /** Restores the left-leaning shape of NODE on the way back up. */
+    private Node balance(Node node) {
+        if (isRed(node.right) && !isRed(node.left)) {
+            node = rotateLeft(node);
+        }
+        if (isRed(node.left) && isRed(node.left.left)) {
+            node = rotateRight(node);
+        }
+        if (isRed(node.left) && isRed(node.right)) {
+            flipColors(node);
+        }
+        return node;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node x = node.right;
+        node.right = x.left;
+        x.left = node;
+        x.color = node.color;
+        node.color = RED;
+        return x;
+    }
+
+    private Node rotateRight(Node node) {
+        Node x = node.left;
+        node.left = x.right;
+        x.right = node;
+        x.color = node.color;
+        node.color = RED;
+        return x;
+    }
+
+    private void flipColors(Node node) {
+        node.color = !node.color;
+        node.left.color = !node.left.color;
+        node.right.color = !node.right.color;
+    }
+
+    private boolean isRed(Node node) {
+        return node != null && node.color == RED;
+    }
+}
@@ -2,6 +2,9 @@ package bstmap;
 
 import java.util.Set;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -113,4 +116,41 @@ public class TestBSTMapExtra {
         assertEquals(null, noChild.get('Z'));
     }
 
+    /* Balance Test
+     * Keys inserted in order, then removed at random, leave a tree
+     * whose black links are even on every path, whose keys come out in
+     * order and which agrees with a TreeMap throughout. */
+    @Test
+    public void testBalanced() {
+        BSTMap<Integer, Integer> b = new BSTMap<Integer, Integer>();
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            b.put(i, i);
+            expected.put(i, i);
+        }
+        int height = b.blackHeight();
+        assertTrue(height > 0 && height <= 17);
+        Random random = new Random(61);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(120000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(key), b.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), b.get(key));
+                b.put(key, i);
+            }
+            if (i % 10000 == 0) {
+                assertTrue(b.blackHeight() >= 0);
+            }
+        }
+        assertTrue(b.blackHeight() >= 0);
+        assertEquals(expected.size(), b.size());
+        Iterator<Integer> keys = b.iterator();
+        for (int key : expected.keySet()) {
+            assertEquals(key, (int) keys.next());
+            assertEquals(expected.get(key), b.get(key));
+        }
+        assertFalse(keys.hasNext());
+        assertEquals(expected.keySet(), b.keySet());
+    }
 }
@@ -0,0 +1,316 @@
+package hashmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  A MyHashMap that bounds its own size, for use as a cache.
+ *
+ *  Every node is also on an intrusive doubly linked list, most recently
+ *  used first: get() and put() move a node to the front, and whenever the
+ *  total weight of the entries exceeds the maximum, entries are evicted from
+ *  the back. Each entry weighs 1 unless a Weigher says otherwise, so the
+ *  maximum weight is then a maximum number of entries. containsKey() neither
+ *  counts as a use nor changes the order.
+ *
+ *  With the TINY_LFU policy, a new key is only admitted when the cache is
+ *  full if get() has asked for it at least as often as for the entry it
+ *  would evict, so a scan of keys seen once cannot flush out a frequently
+ *  used working set. How often keys were asked for is estimated by a
+ *  count-min sketch of small counters, halved every so often so that old
+ *  popularity fades; this is the admission filter of W-TinyLFU, in front of
+ *  a plain LRU list rather than its segmented one.
+ *
+ *  Assumes null keys will never be inserted.
+ *  @author Tsrigo
+ */
+public class CacheMap<K, V> extends MyHashMap<K, V> {
+
+    /** How a full cache treats a new key. */
+    public enum Policy {
+        /** Always admit the new key, evicting the least recently used. */
+        LRU,
+        /** Admit the new key only if it is used as often as its victim. */
+        TINY_LFU
+    }
+
+    /** Gives the weight of an entry. */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    /** A node that is also on the list of nodes by recency of use. */
+    private class CacheNode extends Node {
+        private CacheNode prev;
+        private CacheNode next;
+        private long weight;
+
+        CacheNode(K key, V value) {
+            super(key, value);
+        }
+
+        /** Replaces the value, reweighing the entry without evicting. */
+        @Override
+        public V setValue(V v) {
+            V old = super.setValue(v);
+            CacheMap.this.weight -= weight;
+            weight = weigher.weigh(key, v);
+            CacheMap.this.weight += weight;
+            return old;
+        }
+    }
+
+    /* Instance Variables */
+    /** The sentinel of the list: head.next is the most recently used. */
+    private final CacheNode head = new CacheNode(null, null);
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final Policy policy;
+    private final FrequencySketch sketch;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * CacheMap constructor for an LRU cache of at most maxEntries entries.
+     *
+     * @param maxEntries maximum number of entries
+     */
+    public CacheMap(long maxEntries) {
+        this(maxEntries, (k, v) -> 1, Policy.LRU);
+    }
+
+    /**
+     * CacheMap constructor for a cache whose entries, weighed by WEIGHER,
+     * weigh at most maxWeight in total.
+     *
+     * @param maxWeight maximum total weight
+     * @param weigher the weight of each entry
+     * @param policy how a full cache treats new keys
+     */
+    public CacheMap(long maxWeight, Weigher<K, V> weigher, Policy policy) {
+        super();
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+        sketch = policy == Policy.TINY_LFU
+                ? new FrequencySketch((int) Math.min(maxWeight, 1 << 24)) : null;
+        head.prev = head;
+        head.next = head;
+    }
+
+    @Override
+    protected Node createNode(K key, V value) {
+        CacheNode node = new CacheNode(key, value);
+        node.weight = weigher.weigh(key, value);
+        weight += node.weight;
+        linkFirst(node);
+        return node;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        head.prev = head;
+        head.next = head;
+        weight = 0;
+    }
+
+    @Override
+    public V get(K key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        CacheNode node = (CacheNode) getNode(key);
+        if (node == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        unlink(node);
+        linkFirst(node);
+        return node.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        CacheNode node = (CacheNode) getNode(key);
+        if (node != null) {
+            weight -= node.weight;
+            node.value = value;
+            node.weight = weigher.weigh(key, value);
+            weight += node.weight;
+            unlink(node);
+            linkFirst(node);
+        } else {
+            if (sketch != null) {
+                CacheNode victim = head.prev;
+                if (victim != head && weight + weigher.weigh(key, value) > maxWeight
+                        && sketch.estimate(key) < sketch.estimate(victim.key)) {
+                    rejections += 1;
+                    return;
+                }
+            }
+            super.put(key, value);
+        }
+        while (weight > maxWeight && head.prev != head) {
+            CacheNode victim = head.prev;
+            removeNode(victim);
+            evictions += 1;
+        }
+    }
+
+    /** Puts each pair in order, as put() does. */
+    @Override
+    public void putAll(List<? extends K> keys, List<? extends V> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            put(keys.get(i), values.get(i));
+        }
+    }
+
+    /** Gets each key in order, as get() does. */
+    @Override
+    public List<V> getAll(List<? extends K> keys) {
+        List<V> result = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            result.add(get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public V remove(K key) {
+        CacheNode node = (CacheNode) getNode(key);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.value;
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        CacheNode node = (CacheNode) getNode(key);
+        if (node == null || !(value == null ? node.value == null : value.equals(node.value))) {
+            return null;
+        }
+        removeNode(node);
+        return node.value;
+    }
+
+    /** Returns the number of get() calls that found their key. */
+    public long hits() {
+        return hits;
+    }
+
+    /** Returns the number of get() calls that did not find their key. */
+    public long misses() {
+        return misses;
+    }
+
+    /** Returns the number of entries evicted to stay within the maximum
+     *  weight. */
+    public long evictions() {
+        return evictions;
+    }
+
+    /** Returns the number of new keys TINY_LFU declined to admit. */
+    public long rejections() {
+        return rejections;
+    }
+
+    /** Returns the total weight of the entries. */
+    public long weight() {
+        return weight;
+    }
+
+    /** Removes NODE from the table and from the list. */
+    private void removeNode(CacheNode node) {
+        unlink(node);
+        weight -= node.weight;
+        super.remove(node.key);
+    }
+
+    private void linkFirst(CacheNode node) {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private void unlink(CacheNode node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    /**
+     * Estimates how often each key was counted with DEPTH rows of 4-bit
+     * counters, taking the least of the counters a key maps to. After
+     * ten times as many counts as the cache holds entries, every counter
+     * is halved.
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97CB3127, 0xB4B82E39, 0x5D9B7D1B, 0xE4A3A3B5};
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        /** A sketch for a cache of about CAPACITY entries, with two
+         *  columns per entry to keep collisions rare. */
+        FrequencySketch(int capacity) {
+            int columns = 16;
+            while (columns < 2 * capacity) {
+                columns *= 2;
+            }
+            counters = new byte[columns * DEPTH];
+            mask = columns - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        void increment(Object key) {
+            int h = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(h, row);
+                if (counters[i] < MAX_COUNT) {
+                    counters[i] += 1;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int estimate(Object key) {
+            int h = key.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, counters[index(h, row)]);
+            }
+            return min;
+        }
+
+        private int index(int h, int row) {
+            return row * (mask + 1) + (HashStrategy.murmur(h * SEEDS[row]) & mask);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package hashmap;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A hash table that many threads may read and write at once.
+ *
+ *  Buckets are chains of nodes, as in MyHashMap. Writers lock one of
+ *  STRIPES locks, chosen by the low bits of the key's hash; since the table
+ *  always has at least STRIPES buckets, every key of a bucket maps to the
+ *  same lock, and writers to different stripes never wait for each other.
+ *  Readers take no lock: buckets are read from an AtomicReferenceArray and
+ *  nodes link through volatile fields, so a reader sees each chain either
+ *  before or after any concurrent change.
+ *
+ *  Resizing is cooperative. The thread that finds the table too full
+ *  installs a table of twice the size; it and every writer that runs into
+ *  the resize then claim runs of STRIDE buckets, copy each bucket into the
+ *  new table under its stripe lock and leave a forwarding node behind.
+ *  Readers and writers that meet a forwarding node continue in the new
+ *  table. The last thread to finish its run makes the new table current.
+ *
+ *  keySet() is a view of the map, not a copy. Its iterators, like
+ *  iterator(), are weakly consistent: they walk the buckets as they go,
+ *  never throw ConcurrentModificationException, return each key present
+ *  throughout the walk once, and may or may not return keys added or
+ *  removed during it. Assumes null keys and values will never be
+ *  inserted, and does not resize down upon remove().
+ *  @author Tsrigo
+ */
+public class ConcurrentMyHashMap<K, V> implements Map61B<K, V> {
+
+    /** The number of write locks. */
+    private static final int STRIPES = 64;
+    /** The number of buckets a resizing thread claims at once. */
+    private static final int STRIDE = 16;
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_LOAD = 0.75;
+
+    private static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /** Left in a bucket of the old table once it has been copied. */
+    private static class Forward<K, V> extends Node<K, V> {
+        final Table<K, V> target;
+
+        Forward(Table<K, V> target) {
+            super(0, null, null, null);
+            this.target = target;
+        }
+    }
+
+    private static class Table<K, V> {
+        final AtomicReferenceArray<Node<K, V>> buckets;
+        /** The table being resized into, or null. */
+        final AtomicReference<Table<K, V>> next = new AtomicReference<>();
+        /** The first bucket not yet claimed by a resizing thread. */
+        final AtomicInteger claimed = new AtomicInteger();
+        /** The number of buckets copied into next. */
+        final AtomicInteger copied = new AtomicInteger();
+
+        Table(int size) {
+            buckets = new AtomicReferenceArray<>(size);
+        }
+
+        int length() {
+            return buckets.length();
+        }
+    }
+
+    /* Instance Variables */
+    private volatile Table<K, V> table;
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder count = new LongAdder();
+    private final double maxLoad;
+
+    /** Constructors */
+    public ConcurrentMyHashMap() {
+        this(DEFAULT_SIZE, DEFAULT_LOAD);
+    }
+
+    public ConcurrentMyHashMap(int initialSize) {
+        this(initialSize, DEFAULT_LOAD);
+    }
+
+    /**
+     * ConcurrentMyHashMap constructor that creates a backing array of at
+     * least initialSize buckets, and never fewer than STRIPES.
+     * The load factor (# items / # buckets) should always be <= maxLoad
+     * once concurrent resizes have finished.
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     */
+    public ConcurrentMyHashMap(int initialSize, double maxLoad) {
+        if (maxLoad <= 0) {
+            throw new IllegalArgumentException("maxLoad must be positive");
+        }
+        this.maxLoad = maxLoad;
+        int size = STRIPES;
+        while (size < initialSize) {
+            size *= 2;
+        }
+        table = new Table<>(size);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Table<K, V> t = table;
+        int i = 0;
+        while (i < t.length()) {
+            Table<K, V> forwarded = null;
+            synchronized (locks[i & (STRIPES - 1)]) {
+                Node<K, V> head = t.buckets.get(i);
+                if (head instanceof Forward) {
+                    forwarded = ((Forward<K, V>) head).target;
+                } else {
+                    int removed = 0;
+                    for (Node<K, V> e = head; e != null; e = e.next) {
+                        removed += 1;
+                    }
+                    t.buckets.set(i, null);
+                    count.add(-removed);
+                }
+            }
+            if (forwarded == null) {
+                i += 1;
+            } else {
+                /* Buckets before i of the new table may have been copied
+                 * from ones already cleared after being filled again, so
+                 * start the new table over. */
+                helpResize(t);
+                t = forwarded;
+                i = 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        int h = hash(key);
+        Table<K, V> t = table;
+        Node<K, V> e = t.buckets.get(h & (t.length() - 1));
+        while (e != null) {
+            if (e instanceof Forward) {
+                t = ((Forward<K, V>) e).target;
+                e = t.buckets.get(h & (t.length() - 1));
+                continue;
+            }
+            if (e.hash == h && key.equals(e.key)) {
+                return e.value;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, count.sum());
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        int h = hash(key);
+        Table<K, V> t = table;
+        while (true) {
+            int i = h & (t.length() - 1);
+            Table<K, V> forwarded = null;
+            boolean added = false;
+            synchronized (locks[h & (STRIPES - 1)]) {
+                Node<K, V> head = t.buckets.get(i);
+                if (head instanceof Forward) {
+                    forwarded = ((Forward<K, V>) head).target;
+                } else {
+                    Node<K, V> e = head;
+                    while (e != null && !(e.hash == h && key.equals(e.key))) {
+                        e = e.next;
+                    }
+                    if (e != null) {
+                        e.value = value;
+                        return;
+                    }
+                    t.buckets.set(i, new Node<>(h, key, value, head));
+                    count.increment();
+                    added = true;
+                }
+            }
+            if (added) {
+                if (count.sum() > maxLoad * t.length()) {
+                    startResize(t);
+                }
+                if (t.next.get() != null) {
+                    helpResize(t);
+                }
+                return;
+            }
+            helpResize(t);
+            t = forwarded;
+        }
+    }
+
+    /** Returns a view of the keys, which supports remove() but not add(). */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public int size() {
+                return ConcurrentMyHashMap.this.size();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return o != null && containsKey((K) o);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean remove(Object o) {
+                return o != null && ConcurrentMyHashMap.this.remove((K) o) != null;
+            }
+
+            @Override
+            public void clear() {
+                ConcurrentMyHashMap.this.clear();
+            }
+
+            @Override
+            public Iterator<K> iterator() {
+                return new KeyIterator();
+            }
+        };
+    }
+
+    @Override
+    public V remove(K key) {
+        return remove(key, null);
+    }
+
+    /**
+     * Removes the entry for KEY if it is mapped to VALUE, or to anything
+     * if VALUE is null, and returns the value removed.
+     */
+    @Override
+    public V remove(K key, V value) {
+        int h = hash(key);
+        Table<K, V> t = table;
+        while (true) {
+            int i = h & (t.length() - 1);
+            Table<K, V> forwarded;
+            synchronized (locks[h & (STRIPES - 1)]) {
+                Node<K, V> head = t.buckets.get(i);
+                if (!(head instanceof Forward)) {
+                    Node<K, V> prev = null;
+                    for (Node<K, V> e = head; e != null; prev = e, e = e.next) {
+                        if (e.hash == h && key.equals(e.key)) {
+                            V old = e.value;
+                            if (value != null && !value.equals(old)) {
+                                return null;
+                            }
+                            if (prev == null) {
+                                t.buckets.set(i, e.next);
+                            } else {
+                                prev.next = e.next;
+                            }
+                            count.decrement();
+                            return old;
+                        }
+                    }
+                    return null;
+                }
+                forwarded = ((Forward<K, V>) head).target;
+            }
+            helpResize(t);
+            t = forwarded;
+        }
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Walks the buckets of the table current when it was created. A bucket
+     * found already copied is walked as the two buckets of the next table
+     * it was split into, and so on, without taking any lock.
+     */
+    private class KeyIterator implements Iterator<K> {
+        private final Table<K, V> base = table;
+        /** The next bucket of base to walk. */
+        private int index;
+        /** Buckets of later tables still to walk, as table and index. */
+        private final ArrayDeque<Object[]> pending = new ArrayDeque<>();
+        /** The next node to return, or null once there are none. */
+        private Node<K, V> next;
+
+        KeyIterator() {
+            advance(null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public K next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            K key = next.key;
+            advance(next.next);
+            return key;
+        }
+
+        /** Sets next to E, or to the first node of the buckets after the
+         *  current one if E is null. */
+        @SuppressWarnings("unchecked")
+        private void advance(Node<K, V> e) {
+            while (e == null) {
+                Table<K, V> t;
+                int i;
+                if (!pending.isEmpty()) {
+                    Object[] bucket = pending.pop();
+                    t = (Table<K, V>) bucket[0];
+                    i = (Integer) bucket[1];
+                } else if (index < base.length()) {
+                    t = base;
+                    i = index++;
+                } else {
+                    break;
+                }
+                e = t.buckets.get(i);
+                if (e instanceof Forward) {
+                    Table<K, V> target = ((Forward<K, V>) e).target;
+                    pending.push(new Object[] {target, i + t.length()});
+                    pending.push(new Object[] {target, i});
+                    e = null;
+                }
+            }
+            next = e;
+        }
+    }
+
+    /** Installs a table twice the size of T to resize into, unless one is. */
+    private void startResize(Table<K, V> t) {
+        if (t == table) {
+            t.next.compareAndSet(null, new Table<>(t.length() * 2));
+        }
+    }
+
+    /** Copies runs of buckets of T into its next table until none are
+     *  left to claim, making the next table current once all are copied. */
+    private void helpResize(Table<K, V> t) {
+        Table<K, V> next = t.next.get();
+        if (next == null) {
+            return;
+        }
+        int n = t.length();
+        int start;
+        while ((start = t.claimed.getAndAdd(STRIDE)) < n) {
+            int end = Math.min(start + STRIDE, n);
+            for (int i = start; i < end; i++) {
+                copyBucket(t, next, i);
+            }
+            if (t.copied.addAndGet(end - start) == n) {
+                table = next;
+                if (count.sum() > maxLoad * next.length()) {
+                    startResize(next);
+                }
+            }
+        }
+    }
+
+    /** Splits bucket I of T between buckets I and I + T.length() of NEXT. */
+    private void copyBucket(Table<K, V> t, Table<K, V> next, int i) {
+        int n = t.length();
+        synchronized (locks[i & (STRIPES - 1)]) {
+            Node<K, V> low = null, high = null;
+            for (Node<K, V> e = t.buckets.get(i); e != null; e = e.next) {
+                if ((e.hash & n) == 0) {
+                    low = new Node<>(e.hash, e.key, e.value, low);
+                } else {
+                    high = new Node<>(e.hash, e.key, e.value, high);
+                }
+            }
+            next.buckets.set(i, low);
+            next.buckets.set(i + n, high);
+            t.buckets.set(i, new Forward<>(next));
+        }
+    }
+
+    /** Returns the hash of KEY, spread so that its high bits affect the
+     *  bucket. */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
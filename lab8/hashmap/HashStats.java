@@ -0,0 +1,62 @@
+package hashmap;
+
+/**
+ * How evenly a hash table has spread its keys, as reported by
+ * MyHashMap.stats().
+ *
+ * Probes count the keys compared during a lookup that scans a bucket from
+ * its start: a lookup of the k-th key of a bucket takes k probes, and a
+ * lookup of a missing key takes as many as its bucket holds.
+ *
+ * @author Tsrigo
+ */
+public class HashStats {
+    /** The number of buckets. */
+    public final int buckets;
+    /** The number of keys. */
+    public final int size;
+    /** histogram[k] is the number of buckets holding k keys. */
+    public final int[] histogram;
+    /** The number of keys in the fullest bucket. */
+    public final int maxChain;
+    /** The mean probes of a lookup of each key in the table. */
+    public final double meanHitProbes;
+    /** The mean probes of a lookup of a missing key, over every bucket. */
+    public final double meanMissProbes;
+
+    HashStats(int buckets, int size, int[] histogram) {
+        this.buckets = buckets;
+        this.size = size;
+        this.histogram = histogram;
+        maxChain = histogram.length - 1;
+        long hitProbes = 0;
+        for (int k = 1; k < histogram.length; k++) {
+            hitProbes += (long) histogram[k] * k * (k + 1) / 2;
+        }
+        meanHitProbes = size == 0 ? 0 : (double) hitProbes / size;
+        meanMissProbes = buckets == 0 ? 0 : (double) size / buckets;
+    }
+
+    /** Returns the fraction of buckets that are empty. */
+    public double emptyFraction() {
+        return buckets == 0 ? 0 : (double) histogram[0] / buckets;
+    }
+
+    /** Returns a one-line summary of these stats. */
+    public String summary() {
+        return String.format("%d keys in %d buckets, %.1f%% empty, longest chain %d,"
+                + " mean probes %.2f per hit and %.2f per miss", size, buckets,
+                100 * emptyFraction(), maxChain, meanHitProbes, meanMissProbes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(summary()).append(String.format("%n"));
+        for (int k = 0; k < histogram.length; k++) {
+            if (histogram[k] > 0) {
+                s.append(String.format("  %3d keys: %d buckets%n", k, histogram[k]));
+            }
+        }
+        return s.toString();
+    }
+}
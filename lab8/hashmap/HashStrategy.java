@@ -0,0 +1,80 @@
+package hashmap;
+
+/**
+ * Turns a key into the hash a table uses to choose its bucket.
+ *
+ * MyHashMap picks buckets by the hash modulo the number of buckets, which
+ * only looks at its low bits, so keys whose hashCode() values differ only in
+ * their high bits, such as multiples of a power of two, share buckets.
+ * A strategy that mixes every bit of the hash code into every bit of the
+ * result spreads them out again.
+ *
+ * @author Tsrigo
+ */
+@FunctionalInterface
+public interface HashStrategy {
+
+    /** Returns the hash of KEY, which is never null. */
+    int hash(Object key);
+
+    /** Uses hashCode() unchanged. */
+    HashStrategy IDENTITY = Object::hashCode;
+
+    /** Mixes hashCode() with the MurmurHash3 finalizer. */
+    HashStrategy MURMUR = key -> murmur(key.hashCode());
+
+    /** Returns H with every bit mixed into every other, as MurmurHash3
+     *  finishes a hash. */
+    static int murmur(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /** Returns the xxHash32 of DATA with the given SEED. This hashes
+     *  contents, so it suits only maps that also compare byte arrays by
+     *  contents, such as MappedHashMap; MyHashMap compares keys with
+     *  equals(), under which two arrays are equal only if they are the
+     *  same array, so it offers no strategy built on this. */
+    static int xxHash32(byte[] data, int seed) {
+        final int p1 = 0x9E3779B1, p2 = 0x85EBCA77, p3 = 0xC2B2AE3D;
+        final int p4 = 0x27D4EB2F, p5 = 0x165667B1;
+        int length = data.length;
+        int i = 0;
+        int h;
+        if (length >= 16) {
+            int v1 = seed + p1 + p2, v2 = seed + p2, v3 = seed, v4 = seed - p1;
+            for (; i <= length - 16; i += 16) {
+                v1 = Integer.rotateLeft(v1 + littleEndian(data, i) * p2, 13) * p1;
+                v2 = Integer.rotateLeft(v2 + littleEndian(data, i + 4) * p2, 13) * p1;
+                v3 = Integer.rotateLeft(v3 + littleEndian(data, i + 8) * p2, 13) * p1;
+                v4 = Integer.rotateLeft(v4 + littleEndian(data, i + 12) * p2, 13) * p1;
+            }
+            h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+                    + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            h = seed + p5;
+        }
+        h += length;
+        for (; i + 4 <= length; i += 4) {
+            h = Integer.rotateLeft(h + littleEndian(data, i) * p3, 17) * p4;
+        }
+        for (; i < length; i++) {
+            h = Integer.rotateLeft(h + (data[i] & 0xFF) * p5, 11) * p1;
+        }
+        h ^= h >>> 15;
+        h *= p2;
+        h ^= h >>> 13;
+        h *= p3;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int littleEndian(byte[] data, int i) {
+        return (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8
+                | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24;
+    }
+}
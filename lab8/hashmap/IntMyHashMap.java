@@ -0,0 +1,212 @@
+package hashmap;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ *  A hash table from int keys to values that never boxes its keys.
+ *
+ *  It is laid out like MyHashMap, a table of buckets each holding a chain
+ *  of entries, but the entries are not Node objects: entry i is keys[i],
+ *  values[i] and next[i], the index plus one of the next entry in its
+ *  chain, and each bucket holds the index plus one of its first entry.
+ *  Entries are kept packed at the front of the arrays, so keys() and
+ *  resizing walk them in order, and remove() moves the last entry into the
+ *  hole. It offers the methods of Map61B with int keys in place of K, but does
+ *  not implement Map61B: Integer and int overloads of put() would be ambiguous
+ *  for callers whose values are boxed as well.
+ *
+ *  The number of buckets and the load factor behave as in
+ *  MyHashMap(int initialSize, double maxLoad): the table starts with
+ *  initialSize buckets and doubles whenever the load factor
+ *  (# items / # buckets) would exceed maxLoad.
+ *  Does not resize down upon remove().
+ *  @author Tsrigo
+ */
+public class IntMyHashMap<V> {
+
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_LOAD = 0.75;
+
+    /* Instance Variables */
+    /** The index plus one of the first entry of each bucket, 0 if empty. */
+    private int[] buckets;
+    /** The entries; only the first size are in use. */
+    private int[] keys;
+    private V[] values;
+    private int[] next;
+    private int size;
+    private final double maxLoad;
+
+    /** Constructors */
+    public IntMyHashMap() {
+        this(DEFAULT_SIZE, DEFAULT_LOAD);
+    }
+
+    public IntMyHashMap(int initialSize) {
+        this(initialSize, DEFAULT_LOAD);
+    }
+
+    /**
+     * IntMyHashMap constructor that creates a backing array of initialSize.
+     * The load factor (# items / # buckets) should always be <= loadFactor
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     */
+    public IntMyHashMap(int initialSize, double maxLoad) {
+        if (initialSize < 1 || maxLoad <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxLoad = maxLoad;
+        buckets = new int[initialSize];
+        createEntries((int) Math.min(Integer.MAX_VALUE - 8, Math.ceil(initialSize * maxLoad)));
+    }
+
+    public void clear() {
+        Arrays.fill(buckets, 0);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    public V get(int key) {
+        int i = find(key);
+        return i < 0 ? null : values[i];
+    }
+
+    public void put(int key, V value) {
+        int i = find(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        if (size + 1 > maxLoad * buckets.length) {
+            resize(buckets.length * 2);
+        }
+        if (size == keys.length) {
+            growEntries(Math.max(1, keys.length * 2));
+        }
+        int b = bucket(key, buckets.length);
+        keys[size] = key;
+        values[size] = value;
+        next[size] = buckets[b];
+        buckets[b] = size + 1;
+        size += 1;
+    }
+
+    public V remove(int key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = values[i];
+        delete(i);
+        return old;
+    }
+
+    public V remove(int key, V value) {
+        int i = find(key);
+        if (i < 0 || !(value == null ? values[i] == null : value.equals(values[i]))) {
+            return null;
+        }
+        delete(i);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Returns the keys, each boxed. */
+    public Set<Integer> keySet() {
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(keys[i]);
+        }
+        return result;
+    }
+
+    /** Returns a new array of the keys, in no particular order. */
+    public int[] keys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /** Returns the index of the entry for KEY, or -1 if there is none. */
+    private int find(int key) {
+        for (int e = buckets[bucket(key, buckets.length)]; e != 0; e = next[e - 1]) {
+            if (keys[e - 1] == key) {
+                return e - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Unlinks entry I and moves the last entry into its place. */
+    private void delete(int i) {
+        unlink(i);
+        int last = size - 1;
+        if (i != last) {
+            unlink(last);
+            keys[i] = keys[last];
+            values[i] = values[last];
+            int b = bucket(keys[i], buckets.length);
+            next[i] = buckets[b];
+            buckets[b] = i + 1;
+        }
+        values[last] = null;
+        size -= 1;
+    }
+
+    /** Removes entry I from the chain of its bucket. */
+    private void unlink(int i) {
+        int b = bucket(keys[i], buckets.length);
+        if (buckets[b] == i + 1) {
+            buckets[b] = next[i];
+            return;
+        }
+        int e = buckets[b];
+        while (next[e - 1] != i + 1) {
+            e = next[e - 1];
+        }
+        next[e - 1] = next[i];
+    }
+
+    private void resize(int tableSize) {
+        buckets = new int[tableSize];
+        for (int i = 0; i < size; i++) {
+            int b = bucket(keys[i], tableSize);
+            next[i] = buckets[b];
+            buckets[b] = i + 1;
+        }
+    }
+
+    private void createEntries(int capacity) {
+        keys = new int[capacity];
+        values = newValues(capacity);
+        next = new int[capacity];
+    }
+
+    private void growEntries(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        next = Arrays.copyOf(next, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V[] newValues(int capacity) {
+        return (V[]) new Object[capacity];
+    }
+
+    /** Returns the bucket of KEY among N buckets. The key is mixed so that
+     *  runs of consecutive ids spread over the table, and the mixed value
+     *  scaled to [0, N) by a multiply instead of a division. */
+    private static int bucket(int key, int n) {
+        int h = key * 0x9E3779B9;
+        return (int) (((h & 0xFFFFFFFFL) * n) >>> 32);
+    }
+}
@@ -1,5 +1,7 @@
 package hashmap;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 /**
  * Your implementation hashmap.MyHashMap should implement this interface. To do so,
@@ -45,5 +47,30 @@ public interface Map61B<K, V> extends Iterable<K> {
      * throw an UnsupportedOperationException.
      */
     V remove(K key, V value);
-}
 
+    /**
+     * Associates each of the specified keys with the value at the same
+     * position in the specified values, as if by put() in order. Maps may
+     * reorder the work to touch their table once, in order.
+     */
+    default void putAll(List<? extends K> keys, List<? extends V> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            put(keys.get(i), values.get(i));
+        }
+    }
+
+    /**
+     * Returns the values to which each of the specified keys is mapped, at
+     * the key's position, with null for keys this map has no mapping for.
+     */
+    default List<V> getAll(List<? extends K> keys) {
+        List<V> result = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            result.add(get(key));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,695 @@
+package hashmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ *  A hash table from byte arrays to byte arrays kept in a memory-mapped
+ *  file instead of on the heap, so that it may hold more than fits in
+ *  memory, adds nothing for the garbage collector to trace, and can be
+ *  closed and reopened without being rebuilt.
+ *
+ *  The file starts with a header, followed by the table: one offset per
+ *  bucket, of the first entry in its chain, or 0 for an empty bucket. Entries
+ *  follow, each holding the offset of the next entry in its chain, the hash
+ *  and lengths of its key and value, and then the key and value bytes. New
+ *  entries are appended. A value of a different length is written as a new
+ *  entry, and removed entries are only unlinked, so the bytes they took
+ *  become garbage. When the table grows, or garbage outweighs live entries,
+ *  the live entries are copied into a new file that replaces the old one.
+ *
+ *  Keys and values are compared and hashed by content. Values passed in are
+ *  copied into the file and those returned are fresh copies. as() gives a
+ *  typed view through a Codec, such as Codec.STRING or Codec.INTEGER.
+ *
+ *  keySet() is a view of the keys, and iterators read keys from the file as
+ *  they go, so neither holds the keys on the heap. An iterator throws
+ *  ConcurrentModificationException once the file has been rewritten since
+ *  it was created.
+ *
+ *  Assumes null keys and values will never be inserted, and does not resize
+ *  down upon remove(). Changes are visible to other mappings of the file at
+ *  once, and written to disk by flush() and close().
+ *
+ *  Java cannot unmap a file on demand: a mapping goes away only once its
+ *  buffers are garbage collected. After a rewrite the map drops every
+ *  reference to the old mapping at once, but until the collector runs, the
+ *  replaced file's disk space and address space stay in use, and on
+ *  platforms that refuse to replace a mapped file, such as Windows, the
+ *  rename of the new file over it fails with an UncheckedIOException.
+ *  @author Tsrigo
+ */
+public class MappedHashMap implements Map61B<byte[], byte[]>, Closeable {
+
+    /** Converts values of type T to and from bytes. */
+    public interface Codec<T> {
+        byte[] encode(T value);
+
+        T decode(byte[] bytes);
+
+        Codec<String> STRING = new Codec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        Codec<Integer> INTEGER = new Codec<Integer>() {
+            @Override
+            public byte[] encode(Integer value) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+            }
+
+            @Override
+            public Integer decode(byte[] bytes) {
+                return ByteBuffer.wrap(bytes).getInt();
+            }
+        };
+    }
+
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_LOAD = 0.75;
+    private static final int MAGIC = 0x4D363142;
+
+    /* Header fields, by offset. */
+    private static final int MAGIC_AT = 0;
+    private static final int BUCKETS_AT = 4;
+    private static final int SIZE_AT = 8;
+    private static final int END_AT = 16;
+    private static final int GARBAGE_AT = 24;
+    private static final int LOAD_AT = 32;
+    private static final int HEADER = 40;
+
+    /* Entry fields, by offset from the start of the entry. */
+    private static final int NEXT_AT = 0;
+    private static final int HASH_AT = 8;
+    private static final int KEY_LENGTH_AT = 12;
+    private static final int VALUE_LENGTH_AT = 16;
+    private static final int ENTRY_HEADER = 20;
+
+    /* Instance Variables */
+    private final File file;
+    private Region region;
+    private int buckets;
+    private final double maxLoad;
+
+    /**
+     * Opens the map in FILE, or creates an empty one with the default
+     * initial size and load factor if FILE does not exist.
+     */
+    public MappedHashMap(File file) throws IOException {
+        this(file, DEFAULT_SIZE, DEFAULT_LOAD);
+    }
+
+    /**
+     * Opens the map in FILE, or creates an empty one with initialSize
+     * buckets if FILE does not exist. The load factor (# items / # buckets)
+     * should always be <= the maxLoad the map was created with.
+     *
+     * @param initialSize initial size of backing table, if creating
+     * @param maxLoad maximum load factor, if creating
+     */
+    public MappedHashMap(File file, int initialSize, double maxLoad) throws IOException {
+        this.file = file;
+        if (file.isFile() && file.length() > 0) {
+            region = new Region(file, file.length());
+            if (region.getInt(MAGIC_AT) != MAGIC) {
+                region.close();
+                throw new IOException(file + " does not hold a MappedHashMap");
+            }
+            buckets = region.getInt(BUCKETS_AT);
+            this.maxLoad = region.getDouble(LOAD_AT);
+        } else {
+            if (initialSize < 1 || maxLoad <= 0) {
+                throw new IllegalArgumentException();
+            }
+            this.maxLoad = maxLoad;
+            buckets = initialSize;
+            region = create(file, initialSize, 0);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            Region fresh = create(temporary(), buckets, 0);
+            replace(fresh);
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) {
+        return find(key, hash(key)) != 0;
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        long entry = find(key, hash(key));
+        return entry == 0 ? null : value(region, entry);
+    }
+
+    @Override
+    public int size() {
+        return (int) region.getLong(SIZE_AT);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        int h = hash(key);
+        long entry = find(key, h);
+        if (entry != 0 && region.getInt(entry + VALUE_LENGTH_AT) == value.length) {
+            region.put(entry + ENTRY_HEADER + key.length, value);
+            return;
+        }
+        if (entry != 0) {
+            unlink(entry, h);
+        } else if (size() + 1 > maxLoad * buckets) {
+            rewrite(buckets * 2);
+        }
+        append(region, buckets, h, key, value);
+        region.putLong(SIZE_AT, region.getLong(SIZE_AT) + 1);
+        compactIfWasteful();
+    }
+
+    /** Returns a view of the keys, which compares keys by content and
+     *  supports remove() but not add(). */
+    @Override
+    public Set<byte[]> keySet() {
+        return new AbstractSet<byte[]>() {
+            @Override
+            public int size() {
+                return MappedHashMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof byte[] && containsKey((byte[]) o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof byte[] && MappedHashMap.this.remove((byte[]) o) != null;
+            }
+
+            @Override
+            public void clear() {
+                MappedHashMap.this.clear();
+            }
+
+            @Override
+            public Iterator<byte[]> iterator() {
+                return MappedHashMap.this.iterator();
+            }
+        };
+    }
+
+    @Override
+    public byte[] remove(byte[] key) {
+        int h = hash(key);
+        long entry = find(key, h);
+        if (entry == 0) {
+            return null;
+        }
+        byte[] old = value(region, entry);
+        unlink(entry, h);
+        compactIfWasteful();
+        return old;
+    }
+
+    @Override
+    public byte[] remove(byte[] key, byte[] value) {
+        int h = hash(key);
+        long entry = find(key, h);
+        if (entry == 0 || !Arrays.equals(value, value(region, entry))) {
+            return null;
+        }
+        unlink(entry, h);
+        compactIfWasteful();
+        return value;
+    }
+
+    /** Iterates over copies of the keys, bucket by bucket. */
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new KeyIterator();
+    }
+
+    /** Reads each key from the file when it is asked for. */
+    private class KeyIterator implements Iterator<byte[]> {
+        /** The region walked; the file must not be rewritten meanwhile. */
+        private final Region walked = region;
+        /** The next bucket to walk once the current chain ends. */
+        private int bucket;
+        /** The offset of the next entry, or 0 if it is not yet found. */
+        private long entry;
+
+        @Override
+        public boolean hasNext() {
+            check();
+            while (entry == 0 && bucket < buckets) {
+                entry = walked.getLong(bucketAt(bucket));
+                bucket += 1;
+            }
+            return entry != 0;
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            byte[] key = key(walked, entry);
+            entry = walked.getLong(entry + NEXT_AT);
+            return key;
+        }
+
+        private void check() {
+            if (region != walked) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /** Returns a view of this map with keys and values converted by KEYS
+     *  and VALUES. */
+    public <K, V> Map61B<K, V> as(Codec<K> keys, Codec<V> values) {
+        return new CodecView<>(keys, values);
+    }
+
+    /** Writes all changes to disk. */
+    public void flush() {
+        region.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        region.force();
+        region.close();
+    }
+
+    private class CodecView<K, V> implements Map61B<K, V> {
+        private final Codec<K> keys;
+        private final Codec<V> values;
+
+        CodecView(Codec<K> keys, Codec<V> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        public void clear() {
+            MappedHashMap.this.clear();
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return MappedHashMap.this.containsKey(keys.encode(key));
+        }
+
+        @Override
+        public V get(K key) {
+            return decode(MappedHashMap.this.get(keys.encode(key)));
+        }
+
+        @Override
+        public int size() {
+            return MappedHashMap.this.size();
+        }
+
+        @Override
+        public void put(K key, V value) {
+            MappedHashMap.this.put(keys.encode(key), values.encode(value));
+        }
+
+        /** Returns a view of the keys, which supports remove() but not
+         *  add(). */
+        @Override
+        public Set<K> keySet() {
+            return new AbstractSet<K>() {
+                @Override
+                public int size() {
+                    return MappedHashMap.this.size();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public boolean contains(Object o) {
+                    try {
+                        return o != null && containsKey((K) o);
+                    } catch (ClassCastException excp) {
+                        return false;
+                    }
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public boolean remove(Object o) {
+                    try {
+                        return o != null && MappedHashMap.this.remove(keys.encode((K) o)) != null;
+                    } catch (ClassCastException excp) {
+                        return false;
+                    }
+                }
+
+                @Override
+                public void clear() {
+                    MappedHashMap.this.clear();
+                }
+
+                @Override
+                public Iterator<K> iterator() {
+                    return CodecView.this.iterator();
+                }
+            };
+        }
+
+        @Override
+        public V remove(K key) {
+            return decode(MappedHashMap.this.remove(keys.encode(key)));
+        }
+
+        @Override
+        public V remove(K key, V value) {
+            return decode(MappedHashMap.this.remove(keys.encode(key), values.encode(value)));
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<byte[]> raw = MappedHashMap.this.iterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return raw.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return keys.decode(raw.next());
+                }
+            };
+        }
+
+        private V decode(byte[] value) {
+            return value == null ? null : values.decode(value);
+        }
+    }
+
+    /** Returns the offset of the entry for KEY, whose hash is H, or 0 if
+     *  there is none. */
+    private long find(byte[] key, int h) {
+        for (long e = region.getLong(bucketAt(index(h, buckets))); e != 0;
+                e = region.getLong(e + NEXT_AT)) {
+            if (region.getInt(e + HASH_AT) == h && region.getInt(e + KEY_LENGTH_AT) == key.length
+                    && Arrays.equals(key, key(region, e))) {
+                return e;
+            }
+        }
+        return 0;
+    }
+
+    /** Removes ENTRY, whose hash is H, from its chain and counts its bytes
+     *  as garbage. */
+    private void unlink(long entry, int h) {
+        long next = region.getLong(entry + NEXT_AT);
+        long prev = bucketAt(index(h, buckets));
+        while (region.getLong(prev) != entry) {
+            prev = region.getLong(prev) + NEXT_AT;
+        }
+        region.putLong(prev, next);
+        region.putLong(SIZE_AT, region.getLong(SIZE_AT) - 1);
+        region.putLong(GARBAGE_AT, region.getLong(GARBAGE_AT) + length(region, entry));
+    }
+
+    /** Rewrites the file if garbage takes more of it than live entries. */
+    private void compactIfWasteful() {
+        long garbage = region.getLong(GARBAGE_AT);
+        if (garbage > region.getLong(END_AT) - garbage) {
+            rewrite(buckets);
+        }
+    }
+
+    /** Copies the live entries into a new file with TABLESIZE buckets,
+     *  which then replaces the current one. */
+    private void rewrite(int tableSize) {
+        try {
+            long live = region.getLong(END_AT) - region.getLong(GARBAGE_AT)
+                    - HEADER - 8L * buckets;
+            Region fresh = create(temporary(), tableSize, live);
+            for (int b = 0; b < buckets; b++) {
+                for (long e = region.getLong(bucketAt(b)); e != 0;
+                        e = region.getLong(e + NEXT_AT)) {
+                    append(fresh, tableSize, region.getInt(e + HASH_AT),
+                            key(region, e), value(region, e));
+                }
+            }
+            fresh.putLong(SIZE_AT, region.getLong(SIZE_AT));
+            buckets = tableSize;
+            replace(fresh);
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+
+    /** Renames the file of FRESH over the map's file and switches to it.
+     *  The old mapping is dropped but stays until garbage collected, as
+     *  the class comment describes. */
+    private void replace(Region fresh) throws IOException {
+        fresh.force();
+        fresh.close();
+        region.close();
+        Files.move(fresh.file.toPath(), file.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        region = new Region(file, file.length());
+    }
+
+    private File temporary() {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    /** Returns a region in a new FILE holding an empty table of TABLESIZE
+     *  buckets and room for about EXTRA bytes of entries. */
+    private Region create(File target, int tableSize, long extra) throws IOException {
+        Files.deleteIfExists(target.toPath());
+        long tableEnd = HEADER + 8L * tableSize;
+        Region result = new Region(target, tableEnd + Math.max(extra, 4096));
+        result.putInt(MAGIC_AT, MAGIC);
+        result.putInt(BUCKETS_AT, tableSize);
+        result.putLong(SIZE_AT, 0);
+        result.putLong(END_AT, tableEnd);
+        result.putLong(GARBAGE_AT, 0);
+        result.putDouble(LOAD_AT, maxLoad);
+        return result;
+    }
+
+    /** Appends an entry with hash H, KEY and VALUE to the table of TO, which
+     *  has TABLESIZE buckets. */
+    private static void append(Region to, int tableSize, int h, byte[] key, byte[] value) {
+        long entry = to.getLong(END_AT);
+        long end = entry + ENTRY_HEADER + key.length + value.length;
+        to.ensure(end);
+        long bucket = bucketAt(index(h, tableSize));
+        to.putLong(entry + NEXT_AT, to.getLong(bucket));
+        to.putInt(entry + HASH_AT, h);
+        to.putInt(entry + KEY_LENGTH_AT, key.length);
+        to.putInt(entry + VALUE_LENGTH_AT, value.length);
+        to.put(entry + ENTRY_HEADER, key);
+        to.put(entry + ENTRY_HEADER + key.length, value);
+        to.putLong(bucket, entry);
+        to.putLong(END_AT, end);
+    }
+
+    private static byte[] key(Region from, long entry) {
+        byte[] key = new byte[from.getInt(entry + KEY_LENGTH_AT)];
+        from.get(entry + ENTRY_HEADER, key);
+        return key;
+    }
+
+    private static byte[] value(Region from, long entry) {
+        byte[] value = new byte[from.getInt(entry + VALUE_LENGTH_AT)];
+        from.get(entry + ENTRY_HEADER + from.getInt(entry + KEY_LENGTH_AT), value);
+        return value;
+    }
+
+    private static long length(Region from, long entry) {
+        return ENTRY_HEADER + from.getInt(entry + KEY_LENGTH_AT)
+                + from.getInt(entry + VALUE_LENGTH_AT);
+    }
+
+    private static long bucketAt(int bucket) {
+        return HEADER + 8L * bucket;
+    }
+
+    private static int index(int h, int tableSize) {
+        return Math.floorMod(h, tableSize);
+    }
+
+    /** Returns the xxHash32 of KEY's contents with seed 0. Every bit of
+     *  the key affects every bit of the hash, and the hash is stored in the
+     *  file, so it must not change between versions. */
+    private static int hash(byte[] key) {
+        return HashStrategy.xxHash32(key, 0);
+    }
+
+    /**
+     * A file mapped into memory in segments of at most SEGMENT bytes, since
+     * one mapping cannot exceed 2 GiB. The file grows, doubling, as values
+     * are written past its end.
+     */
+    private static class Region {
+        private static final int SEGMENT_BITS = 30;
+        private static final long SEGMENT = 1L << SEGMENT_BITS;
+
+        private final File file;
+        private final FileChannel channel;
+        private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+        private long capacity;
+
+        Region(File file, long capacity) throws IOException {
+            this.file = file;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(capacity);
+        }
+
+        /** Grows the region, if needed, to hold at least NEEDED bytes. */
+        void ensure(long needed) {
+            if (needed <= capacity) {
+                return;
+            }
+            long grown = capacity;
+            while (grown < needed) {
+                grown *= 2;
+            }
+            try {
+                map(grown);
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        }
+
+        /** Maps the first CAPACITY bytes of the file, reusing the mappings
+         *  of segments already mapped whole. */
+        private void map(long newCapacity) throws IOException {
+            int count = (int) ((newCapacity + SEGMENT - 1) >>> SEGMENT_BITS);
+            int first = segments.length;
+            if (first > 0 && segments[first - 1].capacity() < SEGMENT) {
+                first -= 1;
+            }
+            segments = Arrays.copyOf(segments, count);
+            for (int i = first; i < count; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                        Math.min(SEGMENT, newCapacity - start));
+            }
+            capacity = newCapacity;
+        }
+
+        int getInt(long pos) {
+            MappedByteBuffer s = segments[(int) (pos >>> SEGMENT_BITS)];
+            int at = (int) (pos & (SEGMENT - 1));
+            if (at + Integer.BYTES <= s.capacity()) {
+                return s.getInt(at);
+            }
+            byte[] bytes = new byte[Integer.BYTES];
+            get(pos, bytes);
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+
+        long getLong(long pos) {
+            MappedByteBuffer s = segments[(int) (pos >>> SEGMENT_BITS)];
+            int at = (int) (pos & (SEGMENT - 1));
+            if (at + Long.BYTES <= s.capacity()) {
+                return s.getLong(at);
+            }
+            byte[] bytes = new byte[Long.BYTES];
+            get(pos, bytes);
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+
+        double getDouble(long pos) {
+            return Double.longBitsToDouble(getLong(pos));
+        }
+
+        void putInt(long pos, int value) {
+            MappedByteBuffer s = segments[(int) (pos >>> SEGMENT_BITS)];
+            int at = (int) (pos & (SEGMENT - 1));
+            if (at + Integer.BYTES <= s.capacity()) {
+                s.putInt(at, value);
+                return;
+            }
+            put(pos, ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+        }
+
+        void putLong(long pos, long value) {
+            MappedByteBuffer s = segments[(int) (pos >>> SEGMENT_BITS)];
+            int at = (int) (pos & (SEGMENT - 1));
+            if (at + Long.BYTES <= s.capacity()) {
+                s.putLong(at, value);
+                return;
+            }
+            put(pos, ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+        }
+
+        void putDouble(long pos, double value) {
+            putLong(pos, Double.doubleToRawLongBits(value));
+        }
+
+        /** Reads DST.length bytes from POS into DST. */
+        void get(long pos, byte[] dst) {
+            for (int done = 0; done < dst.length; ) {
+                MappedByteBuffer s = segments[(int) ((pos + done) >>> SEGMENT_BITS)];
+                int at = (int) ((pos + done) & (SEGMENT - 1));
+                int n = Math.min(dst.length - done, s.capacity() - at);
+                s.get(at, dst, done, n);
+                done += n;
+            }
+        }
+
+        /** Writes SRC at POS. */
+        void put(long pos, byte[] src) {
+            for (int done = 0; done < src.length; ) {
+                MappedByteBuffer s = segments[(int) ((pos + done) >>> SEGMENT_BITS)];
+                int at = (int) ((pos + done) & (SEGMENT - 1));
+                int n = Math.min(src.length - done, s.capacity() - at);
+                s.put(at, src, done, n);
+                done += n;
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer s : segments) {
+                s.force();
+            }
+        }
+
+        /** Closes the file and drops the mapping, which is released once
+         *  no buffer of it is reachable. */
+        void close() throws IOException {
+            channel.close();
+            segments = new MappedByteBuffer[0];
+            capacity = 0;
+        }
+    }
+}
@@ -1,21 +1,58 @@
 package hashmap;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  *  A hash table-backed Map implementation. Provides amortized constant time
  *  access to elements via get(), remove(), and put() in the best case.
  *
- *  Assumes null keys will never be inserted, and does not resize down upon remove().
- *  @author YOUR NAME HERE
+ *  In incremental mode, growing the table does not rehash every node in the
+ *  put() that triggers it. The old table is kept beside the new one and each
+ *  later operation moves at most MIGRATE_STEP of its buckets, so no single
+ *  put() pays for more than a few buckets. Until the move is done, lookups
+ *  check the key's bucket in both tables.
+ *
+ *  remove() halves the table once the load factor falls below a quarter of
+ *  maxLoad, but never below the initial size. After halving, the load
+ *  factor is half of maxLoad, so a map hovering near either threshold does
+ *  not resize back and forth. trimToSize() shrinks the table as far as
+ *  maxLoad allows.
+ *
+ *  Buckets are chosen by a HashStrategy, hashCode() itself unless another
+ *  is given, and stats() reports how evenly keys are spread.
+ *
+ *  keySet() and entrySet() are views of the table, not copies: they
+ *  reflect later changes to the map, and iterating over them walks the
+ *  buckets directly. Their iterators are fail-fast, throwing a
+ *  ConcurrentModificationException once the map has been structurally
+ *  changed other than through them, and do not support remove().
+ *
+ *  Assumes null keys will never be inserted.
+ *  @author Tsrigo
  */
 public class MyHashMap<K, V> implements Map61B<K, V> {
 
     /**
      * Protected helper class to store key/value pairs
      * The protected qualifier allows subclass access
+     *
+     * Nodes are the entries entrySet() hands out, so they are equal to any
+     * Map.Entry with an equal key and value, as Map.Entry requires. Buckets
+     * therefore remove them by identity, through removeFromBucket().
      */
-    protected class Node {
+    protected class Node implements Map.Entry<K, V> {
         K key;
         V value;
 
@@ -23,16 +60,78 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
             key = k;
             value = v;
         }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V v) {
+            V old = value;
+            value = v;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
     }
 
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_LOAD = 0.75;
+    /** The number of old buckets an operation moves in incremental mode. */
+    private static final int MIGRATE_STEP = 8;
+    /** The fraction of maxLoad below which remove() halves the table. */
+    private static final double SHRINK_LOAD = 0.25;
+
     /* Instance Variables */
+    /** The buckets; null until a node is first put in them. */
     private Collection<Node>[] buckets;
-    // You should probably define some more!
+    /** The table being moved into buckets in incremental mode, or null.
+     *  Buckets already moved are null. */
+    private Collection<Node>[] oldBuckets;
+    /** The first bucket of oldBuckets not yet moved. */
+    private int migrated;
+    private int size;
+    /** The number of structural changes, for failing iterators fast. */
+    private int modCount;
+    private Set<K> keySet;
+    private Set<Map.Entry<K, V>> entrySet;
+    /** The fewest buckets remove() shrinks the table to. */
+    private final int initialSize;
+    private final double maxLoad;
+    private final boolean incremental;
+    private final HashStrategy strategy;
 
     /** Constructors */
-    public MyHashMap() { }
+    public MyHashMap() {
+        this(DEFAULT_SIZE, DEFAULT_LOAD);
+    }
 
-    public MyHashMap(int initialSize) { }
+    public MyHashMap(int initialSize) {
+        this(initialSize, DEFAULT_LOAD);
+    }
 
     /**
      * MyHashMap constructor that creates a backing array of initialSize.
@@ -41,13 +140,51 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
      * @param initialSize initial size of backing array
      * @param maxLoad maximum load factor
      */
-    public MyHashMap(int initialSize, double maxLoad) { }
+    public MyHashMap(int initialSize, double maxLoad) {
+        this(initialSize, maxLoad, false);
+    }
+
+    /**
+     * MyHashMap constructor that creates a backing array of initialSize,
+     * resizing incrementally if INCREMENTAL is true.
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     * @param incremental whether to move buckets a few at a time on resize
+     */
+    public MyHashMap(int initialSize, double maxLoad, boolean incremental) {
+        this(initialSize, maxLoad, incremental, HashStrategy.IDENTITY);
+    }
+
+    /**
+     * MyHashMap constructor that creates a backing array of initialSize,
+     * choosing the bucket of each key by the hash STRATEGY gives it.
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     * @param incremental whether to move buckets a few at a time on resize
+     * @param strategy the hash function for keys
+     */
+    public MyHashMap(int initialSize, double maxLoad, boolean incremental,
+                     HashStrategy strategy) {
+        if (initialSize < 1 || maxLoad <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.initialSize = initialSize;
+        this.maxLoad = maxLoad;
+        this.incremental = incremental;
+        this.strategy = strategy;
+        buckets = createTable(initialSize);
+    }
 
     /**
      * Returns a new node to be placed in a hash table bucket
+     *
+     * Override this method to store more in each node; it is called once
+     * for each key added to the map.
      */
-    private Node createNode(K key, V value) {
-        return null;
+    protected Node createNode(K key, V value) {
+        return new Node(key, value);
     }
 
     /**
@@ -69,7 +206,7 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
      * OWN BUCKET DATA STRUCTURES WITH THE NEW OPERATOR!
      */
     protected Collection<Node> createBucket() {
-        return null;
+        return new LinkedList<>();
     }
 
     /**
@@ -81,11 +218,434 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
      *
      * @param tableSize the size of the table to create
      */
+    @SuppressWarnings("unchecked")
     private Collection<Node>[] createTable(int tableSize) {
+        return (Collection<Node>[]) new Collection<?>[tableSize];
+    }
+
+    @Override
+    public void clear() {
+        buckets = createTable(initialSize);
+        oldBuckets = null;
+        size = 0;
+        modCount += 1;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        Node node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Node node = getNode(key);
+        if (node != null) {
+            node.value = value;
+            return;
+        }
+        if (size + 1 > maxLoad * buckets.length) {
+            resize(buckets.length * 2);
+        }
+        add(buckets, createNode(key, value));
+        size += 1;
+    }
+
+    /** Returns a view of the keys, which supports remove() but not add(). */
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    /** Returns a view of the entries, whose setValue() writes through to
+     *  the map. */
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public V remove(K key) {
+        Node node = getNode(key);
+        if (node == null) {
+            return null;
+        }
+        delete(node);
+        return node.value;
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        Node node = getNode(key);
+        if (node == null || !(value == null ? node.value == null : value.equals(node.value))) {
+            return null;
+        }
+        delete(node);
+        return node.value;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    private class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            MyHashMap.this.clear();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return o != null && containsKey((K) o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            MyHashMap.this.remove((K) o);
+            return true;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return nodeFor(o) != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Node node = nodeFor(o);
+            if (node == null) {
+                return false;
+            }
+            MyHashMap.this.remove(node.key);
+            return true;
+        }
+
+        /** Returns the node equal to the entry O, or null. */
+        @SuppressWarnings("unchecked")
+        private Node nodeFor(Object o) {
+            if (!(o instanceof Map.Entry) || ((Map.Entry<?, ?>) o).getKey() == null) {
+                return null;
+            }
+            Node node = getNode(((Map.Entry<K, ?>) o).getKey());
+            return node != null && node.equals(o) ? node : null;
+        }
+
+        @Override
+        public void clear() {
+            MyHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    /**
+     * Walks the nodes bucket by bucket. Finishes any resize in progress
+     * first, so that lookups made while iterating do not move nodes.
+     */
+    private abstract class NodeIterator {
+        private final int expectedModCount;
+        /** The next bucket to walk. */
+        private int index;
+        /** The rest of the bucket being walked, or null. */
+        private Iterator<Node> bucket;
+
+        NodeIterator() {
+            if (oldBuckets != null) {
+                migrate(oldBuckets.length);
+            }
+            expectedModCount = modCount;
+        }
+
+        public boolean hasNext() {
+            while ((bucket == null || !bucket.hasNext()) && index < buckets.length) {
+                Collection<Node> next = buckets[index++];
+                bucket = next == null || next.isEmpty() ? null : next.iterator();
+            }
+            return bucket != null && bucket.hasNext();
+        }
+
+        Node nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return bucket.next();
+        }
+    }
+
+    private class KeyIterator extends NodeIterator implements Iterator<K> {
+        @Override
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    private class EntryIterator extends NodeIterator implements Iterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return nextNode();
+        }
+    }
+
+    /**
+     * Grows the table once to fit all of KEYS as new keys, then puts each
+     * key and its value bucket by bucket, in table order. Later pairs with
+     * the same key win, as with put() in order.
+     */
+    @Override
+    public void putAll(List<? extends K> keys, List<? extends V> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        int tableSize = buckets.length;
+        while (size + keys.size() > maxLoad * tableSize) {
+            tableSize *= 2;
+        }
+        if (tableSize > buckets.length) {
+            resize(tableSize);
+        }
+        if (oldBuckets != null) {
+            migrate(oldBuckets.length);
+        }
+        for (long entry : bucketOrder(keys)) {
+            int i = (int) entry;
+            K key = keys.get(i);
+            Node node = find(buckets, key);
+            if (node != null) {
+                node.value = values.get(i);
+            } else {
+                add(buckets, createNode(key, values.get(i)));
+                size += 1;
+            }
+        }
+    }
+
+    /** Looks up KEYS bucket by bucket, in table order. */
+    @Override
+    public List<V> getAll(List<? extends K> keys) {
+        if (oldBuckets != null) {
+            migrate(oldBuckets.length);
+        }
+        List<V> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        for (long entry : bucketOrder(keys)) {
+            int i = (int) entry;
+            Node node = find(buckets, keys.get(i));
+            if (node != null) {
+                result.set(i, node.value);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the positions of KEYS, each in the low half of a long
+     *  whose high half is the key's bucket, sorted. */
+    private long[] bucketOrder(List<? extends K> keys) {
+        long[] order = new long[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) index(keys.get(i), buckets.length) << 32 | i;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    /**
+     * Shrinks the table to the fewest buckets that keep the load factor
+     * <= maxLoad, moving every node now even in incremental mode.
+     */
+    public void trimToSize() {
+        int tableSize = (int) Math.max(1, Math.ceil(size / maxLoad));
+        if (tableSize < buckets.length) {
+            resize(tableSize);
+        }
+        if (oldBuckets != null) {
+            migrate(oldBuckets.length);
+        }
+    }
+
+    /** Returns the bucket length histogram, longest chain and mean probe
+     *  counts of the table, counting both tables during a resize. */
+    public HashStats stats() {
+        int[] histogram = count(buckets, 0, new int[1]);
+        int tableSize = buckets.length;
+        if (oldBuckets != null) {
+            histogram = count(oldBuckets, migrated, histogram);
+            tableSize += oldBuckets.length - migrated;
+        }
+        return new HashStats(tableSize, size, histogram);
+    }
+
+    /** Adds the length of each bucket of TABLE from index FROM on to
+     *  HISTOGRAM, and returns it, grown if a bucket was longer. */
+    private int[] count(Collection<Node>[] table, int from, int[] histogram) {
+        for (int i = from; i < table.length; i++) {
+            int length = table[i] == null ? 0 : table[i].size();
+            if (length >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, length + 1);
+            }
+            histogram[length] += 1;
+        }
+        return histogram;
+    }
+
+    /** Returns the number of buckets, for tests. */
+    int bucketCount() {
+        return buckets.length;
+    }
+
+    /** Returns the node for KEY, or null if there is none, after moving
+     *  a step of any resize in progress. */
+    protected Node getNode(K key) {
+        migrateStep();
+        Node node = find(buckets, key);
+        if (node == null && oldBuckets != null) {
+            node = find(oldBuckets, key);
+        }
+        return node;
+    }
+
+    private Node find(Collection<Node>[] table, K key) {
+        Collection<Node> bucket = table[index(key, table.length)];
+        return bucket == null ? null : findInBucket(bucket, key);
+    }
+
+    /**
+     * Returns the node for KEY in BUCKET, or null if there is none.
+     *
+     * Override this method along with createBucket() when the bucket type
+     * can find a key faster than by iterating through it.
+     */
+    protected Node findInBucket(Collection<Node> bucket, K key) {
+        for (Node node : bucket) {
+            if (key.equals(node.key)) {
+                return node;
+            }
+        }
         return null;
     }
 
-    // TODO: Implement the methods of the Map61B Interface below
-    // Your code won't compile until you do so!
+    /**
+     * Removes NODE itself from BUCKET, returning false if it is not there.
+     * Nodes compare equal by key and value, so this goes by identity rather
+     * than through bucket.remove(), and uses the bucket's iterator.
+     *
+     * Override this method along with createBucket() when the bucket type
+     * can remove a node faster, or its iterator cannot remove.
+     */
+    protected boolean removeFromBucket(Collection<Node> bucket, Node node) {
+        for (Iterator<Node> iter = bucket.iterator(); iter.hasNext(); ) {
+            if (iter.next() == node) {
+                iter.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Removes NODE from whichever table holds it. */
+    private void delete(Node node) {
+        Collection<Node> bucket = buckets[index(node.key, buckets.length)];
+        if (bucket == null || !removeFromBucket(bucket, node)) {
+            removeFromBucket(oldBuckets[index(node.key, oldBuckets.length)], node);
+        }
+        size -= 1;
+        modCount += 1;
+        if (size < SHRINK_LOAD * maxLoad * buckets.length
+                && buckets.length / 2 >= initialSize) {
+            resize(buckets.length / 2);
+        }
+    }
 
+    private void add(Collection<Node>[] table, Node node) {
+        int i = index(node.key, table.length);
+        if (table[i] == null) {
+            table[i] = createBucket();
+        }
+        table[i].add(node);
+        modCount += 1;
+    }
+
+    /** Resizes the table to TABLESIZE buckets, moving every node now unless
+     *  in incremental mode. */
+    private void resize(int tableSize) {
+        if (oldBuckets != null) {
+            migrate(oldBuckets.length);
+        }
+        oldBuckets = buckets;
+        migrated = 0;
+        buckets = createTable(tableSize);
+        modCount += 1;
+        if (!incremental) {
+            migrate(oldBuckets.length);
+        }
+    }
+
+    private void migrateStep() {
+        if (oldBuckets != null) {
+            migrate(MIGRATE_STEP);
+        }
+    }
+
+    /** Moves up to COUNT buckets of oldBuckets into buckets. */
+    private void migrate(int count) {
+        int end = Math.min(migrated + count, oldBuckets.length);
+        for (; migrated < end; migrated++) {
+            Collection<Node> bucket = oldBuckets[migrated];
+            if (bucket != null) {
+                for (Node node : bucket) {
+                    add(buckets, node);
+                }
+                oldBuckets[migrated] = null;
+            }
+        }
+        if (migrated == oldBuckets.length) {
+            oldBuckets = null;
+        }
+    }
+
+    private int index(Object key, int tableSize) {
+        return Math.floorMod(strategy.hash(key), tableSize);
+    }
 }
@@ -0,0 +1,173 @@
+package hashmap;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Hash Table with hybrid buckets: each bucket is a small array until it
+ * holds more than TREEIFY_THRESHOLD nodes, and a red-black tree of nodes by
+ * key from then on, until removals bring it down to UNTREEIFY_THRESHOLD.
+ * Buckets of a well spread table stay arrays, which are cheaper to scan
+ * than a tree, while keys that all land in one bucket still take O(log n)
+ * to find. Trees need comparable keys, so we restrict our map to only allow
+ * comparable keys
+ *
+ * @author Tsrigo
+ */
+public class MyHashMapHybridBuckets<K extends Comparable<K>, V> extends MyHashMap<K, V> {
+
+    /** The size above which a bucket becomes a tree. */
+    static final int TREEIFY_THRESHOLD = 8;
+    /** The size at or below which a tree bucket becomes an array again. */
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    /**
+     * Constructor that creates a backing array with default
+     * initial size and load factor
+     */
+    public MyHashMapHybridBuckets() {
+        super();
+    }
+
+    /**
+     * Constructor that creates a backing array of initialSize
+     * and default load factor
+     *
+     * @param initialSize initial size of backing array
+     */
+    public MyHashMapHybridBuckets(int initialSize) {
+        super(initialSize);
+    }
+
+    /**
+     * Constructor that creates a backing array of initialSize.
+     * The load factor (# items / # buckets) should always be <= loadFactor
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     */
+    public MyHashMapHybridBuckets(int initialSize, double maxLoad) {
+        super(initialSize, maxLoad);
+    }
+
+    @Override
+    protected Collection<Node> createBucket() {
+        return new HybridBucket();
+    }
+
+    @Override
+    protected Node findInBucket(Collection<Node> bucket, K key) {
+        return ((HybridBucket) bucket).find(key);
+    }
+
+    @Override
+    protected boolean removeFromBucket(Collection<Node> bucket, Node node) {
+        return bucket.remove(node);
+    }
+
+    /** A bucket holding its nodes in an array or, once large, a tree. */
+    private class HybridBucket extends AbstractCollection<Node> {
+        /** The nodes while this is an array bucket; only the first size
+         *  are in use. Null while this is a tree bucket. */
+        private Node[] nodes = newNodes(2);
+        private int size;
+        /** The nodes by key while this is a tree bucket, otherwise null. */
+        private TreeMap<K, Node> tree;
+
+        Node find(K key) {
+            if (tree != null) {
+                return tree.get(key);
+            }
+            for (int i = 0; i < size; i++) {
+                if (key.equals(nodes[i].key)) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean add(Node node) {
+            if (tree != null) {
+                tree.put(node.key, node);
+                size = tree.size();
+                return true;
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+            if (size > TREEIFY_THRESHOLD) {
+                tree = new TreeMap<>();
+                for (int i = 0; i < size; i++) {
+                    tree.put(nodes[i].key, nodes[i]);
+                }
+                nodes = null;
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            Node node = (Node) o;
+            if (tree != null) {
+                if (tree.get(node.key) != node) {
+                    return false;
+                }
+                tree.remove(node.key);
+                size = tree.size();
+                if (size <= UNTREEIFY_THRESHOLD) {
+                    nodes = tree.values().toArray(newNodes(TREEIFY_THRESHOLD));
+                    tree = null;
+                }
+                return true;
+            }
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    nodes[i] = nodes[size - 1];
+                    nodes[--size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            if (tree != null) {
+                return tree.values().iterator();
+            }
+            return new Iterator<Node>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Node next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return nodes[next++];
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodes(int length) {
+        return (Node[]) new MyHashMap<?, ?>.Node[length];
+    }
+}
@@ -0,0 +1,322 @@
+package hashmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ *  A hash table that stores its entries directly in parallel arrays of
+ *  keys, values and hashes instead of in buckets of nodes, so that a
+ *  lookup touches a few adjacent slots rather than chasing pointers.
+ *
+ *  Collisions are resolved by linear probing with Robin Hood insertion: an
+ *  entry being inserted takes the slot of any entry that is closer to its
+ *  home slot than the new one is to its own, and that entry continues the
+ *  search instead. Probe lengths stay short and even, and a lookup can stop
+ *  as soon as it reaches an entry closer to home than the key would be.
+ *  remove() shifts the entries after the removed one back a slot rather
+ *  than leaving a tombstone, so the table never fills with deleted slots.
+ *
+ *  Assumes null keys will never be inserted, and does not resize down upon remove().
+ *  @author Tsrigo
+ */
+public class MyHashMapOpenAddressing<K, V> implements Map61B<K, V> {
+
+    private static final int DEFAULT_SIZE = 16;
+    private static final double DEFAULT_LOAD = 0.75;
+    /** The largest table size, the largest power of two an int holds. */
+    private static final int MAX_SIZE = 1 << 30;
+
+    /* Instance Variables */
+    /** The key, value and hash of each slot. A hash of 0 marks an empty
+     *  slot; stored hashes always have their top bit set. */
+    private K[] keys;
+    private V[] values;
+    private int[] hashes;
+    private int size;
+    private final double maxLoad;
+
+    /** Constructors */
+    public MyHashMapOpenAddressing() {
+        this(DEFAULT_SIZE, DEFAULT_LOAD);
+    }
+
+    public MyHashMapOpenAddressing(int initialSize) {
+        this(initialSize, DEFAULT_LOAD);
+    }
+
+    /**
+     * MyHashMapOpenAddressing constructor that creates backing arrays of at
+     * least initialSize slots. The load factor (# items / # slots) is always
+     * <= maxLoad, which must be less than 1 since every item takes a slot.
+     *
+     * @param initialSize initial size of backing arrays
+     * @param maxLoad maximum load factor
+     */
+    public MyHashMapOpenAddressing(int initialSize, double maxLoad) {
+        if (maxLoad <= 0 || maxLoad >= 1) {
+            throw new IllegalArgumentException("maxLoad must be between 0 and 1");
+        }
+        this.maxLoad = maxLoad;
+        createTable(tableSizeFor(initialSize));
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(hashes, 0);
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(K key) {
+        int i = find(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int i = find(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        if (size + 1 > maxLoad * hashes.length) {
+            resize(hashes.length * 2);
+        }
+        insert(hash(key), key, value);
+        size += 1;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> result = new HashSet<>();
+        for (K key : this) {
+            result.add(key);
+        }
+        return result;
+    }
+
+    @Override
+    public V remove(K key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = values[i];
+        delete(i);
+        return old;
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        int i = find(key);
+        if (i < 0 || !(value == null ? values[i] == null : value.equals(values[i]))) {
+            return null;
+        }
+        delete(i);
+        return value;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Grows the table once to fit all of BATCHKEYS as new keys, then puts
+     * each key and its value in the order of their home slots. Later pairs
+     * with the same key win, as with put() in order.
+     */
+    @Override
+    public void putAll(List<? extends K> batchKeys, List<? extends V> batchValues) {
+        if (batchKeys.size() != batchValues.size()) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        int tableSize = hashes.length;
+        while (size + batchKeys.size() > maxLoad * tableSize) {
+            tableSize *= 2;
+        }
+        if (tableSize > hashes.length) {
+            resize(tableSize);
+        }
+        for (long entry : slotOrder(batchKeys)) {
+            int i = (int) entry;
+            K key = batchKeys.get(i);
+            int slot = find(key);
+            if (slot >= 0) {
+                values[slot] = batchValues.get(i);
+            } else {
+                insert(hash(key), key, batchValues.get(i));
+                size += 1;
+            }
+        }
+    }
+
+    /** Looks up BATCHKEYS in the order of their home slots. */
+    @Override
+    public List<V> getAll(List<? extends K> batchKeys) {
+        List<V> result = new ArrayList<>(Collections.nCopies(batchKeys.size(), null));
+        for (long entry : slotOrder(batchKeys)) {
+            int i = (int) entry;
+            int slot = find(batchKeys.get(i));
+            if (slot >= 0) {
+                result.set(i, values[slot]);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the positions of BATCHKEYS, each in the low half of a long
+     *  whose high half is the key's home slot, sorted. */
+    private long[] slotOrder(List<? extends K> batchKeys) {
+        int mask = hashes.length - 1;
+        long[] order = new long[batchKeys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) (hash(batchKeys.get(i)) & mask) << 32 | i;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    private class KeyIterator implements Iterator<K> {
+        /** The next occupied slot, or hashes.length if there is none. */
+        private int next = advance(0);
+
+        private int advance(int i) {
+            while (i < hashes.length && hashes[i] == 0) {
+                i += 1;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < hashes.length;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K key = keys[next];
+            next = advance(next + 1);
+            return key;
+        }
+    }
+
+    /** Returns the slot holding KEY, or -1 if there is none. */
+    private int find(K key) {
+        int h = hash(key);
+        int mask = hashes.length - 1;
+        for (int i = h & mask, dist = 0; ; i = (i + 1) & mask, dist += 1) {
+            int slotHash = hashes[i];
+            if (slotHash == 0 || distance(slotHash, i) < dist) {
+                return -1;
+            }
+            if (slotHash == h && key.equals(keys[i])) {
+                return i;
+            }
+        }
+    }
+
+    /** Inserts KEY, not yet present, with hash H and VALUE. */
+    private void insert(int h, K key, V value) {
+        int mask = hashes.length - 1;
+        for (int i = h & mask, dist = 0; ; i = (i + 1) & mask, dist += 1) {
+            if (hashes[i] == 0) {
+                hashes[i] = h;
+                keys[i] = key;
+                values[i] = value;
+                return;
+            }
+            int slotDist = distance(hashes[i], i);
+            if (slotDist < dist) {
+                int h2 = hashes[i];
+                K k2 = keys[i];
+                V v2 = values[i];
+                hashes[i] = h;
+                keys[i] = key;
+                values[i] = value;
+                h = h2;
+                key = k2;
+                value = v2;
+                dist = slotDist;
+            }
+        }
+    }
+
+    /** Empties slot I, shifting the entries displaced past it back. */
+    private void delete(int i) {
+        int mask = hashes.length - 1;
+        int next = (i + 1) & mask;
+        while (hashes[next] != 0 && distance(hashes[next], next) > 0) {
+            hashes[i] = hashes[next];
+            keys[i] = keys[next];
+            values[i] = values[next];
+            i = next;
+            next = (next + 1) & mask;
+        }
+        hashes[i] = 0;
+        keys[i] = null;
+        values[i] = null;
+        size -= 1;
+    }
+
+    /** Returns how far slot I is from the home slot of hash H. */
+    private int distance(int h, int i) {
+        return (i - h) & (hashes.length - 1);
+    }
+
+    private void resize(int tableSize) {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int[] oldHashes = hashes;
+        createTable(tableSize);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void createTable(int tableSize) {
+        keys = (K[]) new Object[tableSize];
+        values = (V[]) new Object[tableSize];
+        hashes = new int[tableSize];
+    }
+
+    /** Returns the hash of KEY, spread so that its high bits affect the
+     *  home slot, with the top bit set so that it is never 0. */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) | Integer.MIN_VALUE;
+    }
+
+    /** Returns the least power of two that is at least SIZE, but at most
+     *  MAX_SIZE. */
+    private static int tableSizeFor(int size) {
+        if (size > MAX_SIZE) {
+            return MAX_SIZE;
+        }
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+}
@@ -0,0 +1,86 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests of CacheMap. */
+public class TestCacheMap {
+
+    @Test
+    public void lruTest() {
+        CacheMap<String, Integer> c = new CacheMap<>(3);
+        c.put("a", 1);
+        c.put("b", 2);
+        c.put("c", 3);
+        assertEquals(1, (int) c.get("a"));
+        c.put("d", 4);                  // evicts b, the least recently used
+        assertEquals(3, c.size());
+        assertFalse(c.containsKey("b"));
+        assertTrue(c.containsKey("a"));
+        c.put("c", 30);                 // a use of c: a is now the oldest
+        c.put("e", 5);
+        assertFalse(c.containsKey("a"));
+        assertEquals(30, (int) c.get("c"));
+        assertNull(c.get("a"));
+        assertEquals(2, c.hits());
+        assertEquals(1, c.misses());
+        assertEquals(2, c.evictions());
+        assertEquals(4, (int) c.remove("d"));
+        assertEquals(2, c.size());
+        assertEquals(2, c.weight());
+        c.clear();
+        assertEquals(0, c.size());
+        assertEquals(0, c.weight());
+        c.put("f", 6);
+        assertEquals(6, (int) c.get("f"));
+    }
+
+    @Test
+    public void weightTest() {
+        CacheMap<String, String> c = new CacheMap<>(10, (k, v) -> v.length(),
+                CacheMap.Policy.LRU);
+        c.put("a", "xxxx");
+        c.put("b", "xxxx");
+        assertEquals(8, c.weight());
+        c.put("c", "xxx");              // 11 > 10, so a goes
+        assertFalse(c.containsKey("a"));
+        assertEquals(7, c.weight());
+        c.put("b", "x");
+        assertEquals(4, c.weight());
+        c.put("d", "xxxxxxxxxxxx");     // too heavy to keep at all
+        assertEquals(0, c.size());
+        assertEquals(0, c.weight());
+    }
+
+    /** A scan of keys seen once does not flush out keys used often under
+     *  TINY_LFU, but does under LRU. */
+    @Test
+    public void tinyLfuScanTest() {
+        for (CacheMap.Policy policy : CacheMap.Policy.values()) {
+            CacheMap<Integer, Integer> c = new CacheMap<>(100, (k, v) -> 1, policy);
+            for (int round = 0; round < 10; round++) {
+                for (int k = 0; k < 100; k++) {
+                    if (c.get(k) == null) {
+                        c.put(k, k);
+                    }
+                }
+            }
+            for (int k = 1000; k < 1500; k++) {
+                if (c.get(k) == null) {
+                    c.put(k, k);
+                }
+            }
+            int kept = 0;
+            for (int k = 0; k < 100; k++) {
+                kept += c.containsKey(k) ? 1 : 0;
+            }
+            if (policy == CacheMap.Policy.TINY_LFU) {
+                assertTrue(kept > 90);
+                assertTrue(c.rejections() > 400);
+            } else {
+                assertEquals(0, kept);
+            }
+            assertEquals(100, c.size());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/** Tests of ConcurrentMyHashMap, alone and under many writers. */
+public class TestConcurrentMyHashMap {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void sanityTest() {
+        ConcurrentMyHashMap<String, Integer> b = new ConcurrentMyHashMap<>();
+        assertEquals(0, b.size());
+        assertNull(b.get("a"));
+        b.put("a", 1);
+        b.put("b", 2);
+        b.put("a", 3);
+        assertEquals(2, b.size());
+        assertEquals(3, (int) b.get("a"));
+        assertNull(b.remove("b", 5));
+        assertEquals(2, (int) b.remove("b", 2));
+        assertFalse(b.containsKey("b"));
+        assertEquals(3, (int) b.remove("a"));
+        assertEquals(0, b.size());
+        for (int i = 0; i < 1000; i++) {
+            b.put("k" + i, i);
+        }
+        b.clear();
+        assertEquals(0, b.size());
+        assertFalse(b.containsKey("k1"));
+    }
+
+    @Test
+    public void randomizedTest() {
+        Random random = new Random(61);
+        ConcurrentMyHashMap<Integer, Integer> b = new ConcurrentMyHashMap<>(1, 4);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), b.remove(key));
+            } else {
+                b.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), b.size());
+        assertEquals(expected.keySet(), b.keySet());
+        for (int key : expected.keySet()) {
+            assertEquals(expected.get(key), b.get(key));
+        }
+    }
+
+    /** Threads inserting disjoint keys while the table resizes lose none. */
+    @Test
+    public void concurrentPutTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, Integer> b = new ConcurrentMyHashMap<>();
+        int perThread = 50000;
+        runAll(t -> {
+            for (int i = 0; i < perThread; i++) {
+                b.put(t * perThread + i, i);
+            }
+        });
+        assertEquals(THREADS * perThread, b.size());
+        Set<Integer> keys = b.keySet();
+        assertEquals(THREADS * perThread, keys.size());
+        for (int k = 0; k < THREADS * perThread; k++) {
+            assertEquals(k % perThread, (int) b.get(k));
+        }
+    }
+
+    /** Threads that each insert and then remove their own keys, while
+     *  others read them, leave only the keys they kept. */
+    @Test
+    public void concurrentMixedTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, Integer> b = new ConcurrentMyHashMap<>();
+        int perThread = 20000;
+        runAll(t -> {
+            for (int i = 0; i < perThread; i++) {
+                int key = t * perThread + i;
+                b.put(key, key);
+                assertEquals(key, (int) b.get(key));
+                if (i % 2 == 1) {
+                    assertEquals(key, (int) b.remove(key));
+                }
+                b.get((key * 31) % (THREADS * perThread));
+            }
+        });
+        assertEquals(THREADS * perThread / 2, b.size());
+        for (int k = 0; k < THREADS * perThread; k++) {
+            assertEquals(k % 2 == 0, b.containsKey(k));
+        }
+    }
+
+    /** Iterating while other threads insert, and so resize, returns every
+     *  key present throughout exactly once and never fails. */
+    @Test
+    public void iterateDuringPutTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, Integer> b = new ConcurrentMyHashMap<>();
+        int before = 10000;
+        int perThread = 20000;
+        for (int k = 0; k < before; k++) {
+            b.put(k, k);
+        }
+        runAll(t -> {
+            if (t == 0) {
+                for (int pass = 0; pass < 5; pass++) {
+                    Set<Integer> seen = new HashSet<>();
+                    for (int key : b) {
+                        assertTrue(seen.add(key));
+                    }
+                    for (int k = 0; k < before; k++) {
+                        assertTrue(seen.contains(k));
+                    }
+                }
+            } else {
+                for (int i = 0; i < perThread; i++) {
+                    b.put(before + t * perThread + i, i);
+                }
+            }
+        });
+        assertEquals(before + (THREADS - 1) * perThread, b.size());
+        Set<Integer> keys = b.keySet();
+        b.put(-1, -1);
+        assertTrue(keys.contains(-1));
+        assertTrue(keys.remove(-1));
+        assertFalse(b.containsKey(-1));
+    }
+
+    private interface Work {
+        void run(int thread);
+    }
+
+    /** Runs WORK on THREADS threads at once and fails if any of them did. */
+    private static void runAll(Work work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    work.run(id);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/** Tests of the hash strategies and of MyHashMap.stats(). */
+public class TestHashStrategy {
+
+    private static int xxHash(String s) {
+        return HashStrategy.xxHash32(s.getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    @Test
+    public void xxHashVectorsTest() {
+        assertEquals(0x02CC5D05, xxHash(""));
+        assertEquals(0x32D153FF, xxHash("abc"));
+        assertEquals(0xE2293B2F, xxHash("Nobody inspects the spammish repetition"));
+    }
+
+    /** Stats add up, and MURMUR spreads keys that IDENTITY piles into a
+     *  few buckets. */
+    @Test
+    public void statsTest() {
+        MyHashMap<Integer, Integer> identity = new MyHashMap<>(16, 0.75, false,
+                HashStrategy.IDENTITY);
+        MyHashMap<Integer, Integer> murmur = new MyHashMap<>(16, 0.75, false,
+                HashStrategy.MURMUR);
+        for (int i = 0; i < 10000; i++) {
+            identity.put(i << 16, i);
+            murmur.put(i << 16, i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, (int) murmur.get(i << 16));
+        }
+        HashStats a = identity.stats();
+        HashStats b = murmur.stats();
+        assertEquals(10000, b.size);
+        assertEquals(a.buckets, b.buckets);
+        int buckets = 0;
+        int keys = 0;
+        for (int k = 0; k < b.histogram.length; k++) {
+            buckets += b.histogram[k];
+            keys += k * b.histogram[k];
+        }
+        assertEquals(b.buckets, buckets);
+        assertEquals(10000, keys);
+        assertTrue(a.maxChain > 100);
+        assertTrue(b.maxChain < 12);
+        assertTrue(b.meanHitProbes < 2);
+        assertTrue(a.meanHitProbes > 100);
+    }
+}
@@ -0,0 +1,126 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+/** Tests of MappedHashMap and its codec views. */
+public class TestMappedHashMap {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] bytes(String s) {
+        return MappedHashMap.Codec.STRING.encode(s);
+    }
+
+    @Test
+    public void sanityTest() throws IOException {
+        try (MappedHashMap b = new MappedHashMap(new File(folder.getRoot(), "map"))) {
+            assertEquals(0, b.size());
+            assertNull(b.get(bytes("a")));
+            b.put(bytes("a"), bytes("1"));
+            b.put(bytes("b"), bytes("2"));
+            b.put(bytes("a"), bytes("three"));
+            assertEquals(2, b.size());
+            assertArrayEquals(bytes("three"), b.get(bytes("a")));
+            assertTrue(b.containsKey(bytes("b")));
+            assertNull(b.remove(bytes("b"), bytes("9")));
+            assertArrayEquals(bytes("2"), b.remove(bytes("b"), bytes("2")));
+            assertFalse(b.containsKey(bytes("b")));
+            assertEquals(1, b.keySet().size());
+            b.clear();
+            assertEquals(0, b.size());
+            assertFalse(b.containsKey(bytes("a")));
+        }
+    }
+
+    /** The map agrees with java.util.HashMap through resizes and
+     *  compactions, and again once reopened. */
+    @Test
+    public void randomizedReopenTest() throws IOException {
+        File file = new File(folder.getRoot(), "map");
+        Random random = new Random(61);
+        HashMap<Integer, String> expected = new HashMap<>();
+        try (MappedHashMap raw = new MappedHashMap(file, 1, 0.75)) {
+            Map61B<Integer, String> b = raw.as(MappedHashMap.Codec.INTEGER,
+                    MappedHashMap.Codec.STRING);
+            for (int i = 0; i < 50000; i++) {
+                int key = random.nextInt(5000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), b.remove(key));
+                } else {
+                    String value = "v" + random.nextInt(1 << random.nextInt(20));
+                    b.put(key, value);
+                    expected.put(key, value);
+                }
+            }
+            assertEquals(expected.size(), b.size());
+        }
+        try (MappedHashMap raw = new MappedHashMap(file)) {
+            Map61B<Integer, String> b = raw.as(MappedHashMap.Codec.INTEGER,
+                    MappedHashMap.Codec.STRING);
+            assertEquals(expected.size(), b.size());
+            assertEquals(expected.keySet(), b.keySet());
+            for (int key : expected.keySet()) {
+                assertEquals(expected.get(key), b.get(key));
+            }
+            b.put(-1, "new");
+            assertEquals("new", b.get(-1));
+        }
+    }
+
+    /** keySet() compares keys by content, and iterators stop with an
+     *  exception once a resize has rewritten the file under them. */
+    @Test
+    public void keySetViewTest() throws IOException {
+        try (MappedHashMap b = new MappedHashMap(new File(folder.getRoot(), "map"), 4, 0.75)) {
+            Set<byte[]> keys = b.keySet();
+            b.put(bytes("a"), bytes("1"));
+            b.put(bytes("b"), bytes("2"));
+            assertTrue(keys.contains(bytes("a")));
+            assertFalse(keys.contains(bytes("c")));
+            assertTrue(keys.remove(bytes("a")));
+            assertFalse(b.containsKey(bytes("a")));
+            assertEquals(1, keys.size());
+
+            Iterator<byte[]> iter = b.iterator();
+            assertArrayEquals(bytes("b"), iter.next());
+            assertFalse(iter.hasNext());
+            iter = b.iterator();
+            for (int i = 0; i < 10; i++) {
+                b.put(bytes("k" + i), bytes("v"));
+            }
+            try {
+                iter.hasNext();
+                fail();
+            } catch (ConcurrentModificationException e) {
+                // expected
+            }
+
+            Set<String> strings = b.as(MappedHashMap.Codec.STRING,
+                    MappedHashMap.Codec.STRING).keySet();
+            assertTrue(strings.contains("k3"));
+            assertFalse(strings.contains(3));
+            assertEquals(11, strings.size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFilesTest() throws IOException {
+        File file = folder.newFile("other");
+        Files.write(file.toPath(), bytes("not a map at all"));
+        new MappedHashMap(file).close();
+    }
+}
@@ -3,6 +3,15 @@ package hashmap;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
 /** Tests of optional parts of lab 8. */
 public class TestMyHashMapExtra {
 
@@ -49,4 +58,193 @@ public class TestMyHashMapExtra {
         assertTrue(q.containsKey("b"));
         assertTrue(q.containsKey("f"));
     }
+
+    /** Maps that resize incrementally pass the sanity tests, and agree
+     *  with java.util.HashMap while buckets are being moved. */
+    @Test
+    public void testIncrementalResize() {
+        TestMyHashMap.sanityClearTest(new MyHashMap<>(1, 0.75, true));
+        TestMyHashMap.sanityKeySetTest(new MyHashMap<>(1, 0.75, true));
+        TestMyHashMap.functionalityTest(new MyHashMap<>(1, 0.75, true),
+                new MyHashMap<>(1, 0.75, true));
+
+        Random random = new Random(61);
+        MyHashMap<Integer, Integer> q = new MyHashMap<>(1, 0.75, true);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(20000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), q.remove(key));
+            } else {
+                q.put(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), q.size());
+        }
+        assertEquals(expected.keySet(), q.keySet());
+        for (int key : expected.keySet()) {
+            assertEquals(expected.get(key), q.get(key));
+        }
+    }
+
+    /** Removing most keys shrinks the table, though never below its
+     *  initial size, and trimToSize() shrinks it further. */
+    @Test
+    public void testShrink() {
+        for (boolean incremental : new boolean[] {false, true}) {
+            MyHashMap<Integer, Integer> q = new MyHashMap<>(16, 0.75, incremental);
+            for (int i = 0; i < 100000; i++) {
+                q.put(i, i);
+            }
+            int grown = q.bucketCount();
+            for (int i = 0; i < 99000; i++) {
+                assertEquals(i, (int) q.remove(i));
+            }
+            assertTrue(q.bucketCount() < grown / 16);
+            assertTrue(q.bucketCount() >= 1000 / 0.75);
+            for (int i = 99000; i < 100000; i++) {
+                assertEquals(i, (int) q.get(i));
+            }
+            for (int i = 99000; i < 99990; i++) {
+                q.remove(i);
+            }
+            assertEquals(32, q.bucketCount());
+            q.trimToSize();
+            assertEquals(14, q.bucketCount());
+            assertEquals(10, q.keySet().size());
+            for (int i = 99990; i < 100000; i++) {
+                assertEquals(i, (int) q.get(i));
+            }
+            q.put(0, 0);
+            assertEquals(11, q.size());
+        }
+    }
+
+    /** putAll() and getAll() agree with put() and get() one at a time,
+     *  including repeated keys within a batch. */
+    @Test
+    public void testBatch() {
+        List<Map61B<Integer, Integer>> maps = List.of(new MyHashMap<>(),
+                new MyHashMap<>(4, 0.75, true), new MyHashMapOpenAddressing<>(),
+                new ConcurrentMyHashMap<>());
+        for (Map61B<Integer, Integer> q : maps) {
+            Random random = new Random(61);
+            HashMap<Integer, Integer> expected = new HashMap<>();
+            for (int round = 0; round < 5; round++) {
+                List<Integer> keys = new ArrayList<>();
+                List<Integer> values = new ArrayList<>();
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(50000);
+                    keys.add(key);
+                    values.add(i);
+                    expected.put(key, i);
+                }
+                q.putAll(keys, values);
+                assertEquals(expected.size(), q.size());
+                List<Integer> probes = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    probes.add(random.nextInt(60000));
+                }
+                List<Integer> found = q.getAll(probes);
+                for (int i = 0; i < probes.size(); i++) {
+                    assertEquals(expected.get(probes.get(i)), found.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testViews() {
+        MyHashMap<String, Integer> q = new MyHashMap<>();
+        Set<String> keys = q.keySet();
+        Set<Map.Entry<String, Integer>> entries = q.entrySet();
+        q.put("a", 1);
+        q.put("b", 2);
+        q.put("c", 3);
+        assertEquals(3, keys.size());
+        assertTrue(keys.contains("b"));
+        assertSame(keys, q.keySet());
+        for (Map.Entry<String, Integer> e : entries) {
+            e.setValue(e.getValue() * 10);
+        }
+        assertEquals(20, (int) q.get("b"));
+        assertTrue(keys.remove("b"));
+        assertFalse(keys.remove("b"));
+        assertFalse(q.containsKey("b"));
+        assertEquals(2, entries.size());
+        keys.clear();
+        assertEquals(0, q.size());
+
+        CacheMap<String, Integer> c = new CacheMap<>(3);
+        c.put("a", 1);
+        c.put("b", 2);
+        assertTrue(c.keySet().remove("a"));
+        c.put("c", 3);
+        c.put("d", 4);
+        assertEquals(3, c.size());
+        assertTrue(c.containsKey("b"));
+    }
+
+    @Test
+    public void testFailFast() {
+        for (MyHashMap<Integer, Integer> q : List.of(new MyHashMap<Integer, Integer>(),
+                new MyHashMap<Integer, Integer>(4, 0.75, true))) {
+            for (int i = 0; i < 100; i++) {
+                q.put(i, i);
+            }
+            Iterator<Integer> keys = q.iterator();
+            keys.next();
+            q.put(5, 50);                   // replacing a value is not a change
+            keys.next();
+            q.put(1000, 1000);
+            try {
+                keys.next();
+                fail();
+            } catch (ConcurrentModificationException e) {
+                // expected
+            }
+            int n = 0;
+            for (int key : q) {
+                assertTrue(q.containsKey(key));
+                n += 1;
+            }
+            assertEquals(q.size(), n);
+        }
+    }
+
+    /** entrySet() follows the Set and Map.Entry contracts, as
+     *  java.util.HashMap's does, for every kind of bucket, including
+     *  after values change under buckets that hash their nodes. */
+    @Test
+    public void testEntrySetContract() {
+        List<MyHashMap<String, Integer>> maps = List.of(new MyHashMap<>(),
+                new MyHashMap<>(1, 0.75, true), new MyHashMapHSBuckets<>(),
+                new MyHashMapPQBuckets<>(), new MyHashMapHybridBuckets<>(),
+                new CacheMap<>(1000));
+        for (MyHashMap<String, Integer> q : maps) {
+            HashMap<String, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                q.put("k" + i, i);
+                expected.put("k" + i, i);
+            }
+            for (int i = 0; i < 100; i += 3) {
+                q.put("k" + i, -i);
+                expected.put("k" + i, -i);
+            }
+            assertEquals(expected.entrySet(), q.entrySet());
+            assertEquals(q.entrySet(), expected.entrySet());
+            assertEquals(expected.entrySet().hashCode(), q.entrySet().hashCode());
+            assertTrue(q.entrySet().contains(Map.entry("k3", -3)));
+            assertFalse(q.entrySet().contains(Map.entry("k3", 3)));
+            assertFalse(q.entrySet().contains(Map.entry("absent", 3)));
+            assertFalse(q.entrySet().remove(Map.entry("k4", 5)));
+            assertTrue(q.entrySet().remove(Map.entry("k4", 4)));
+            expected.remove("k4");
+            for (int i = 0; i < 100; i += 2) {
+                assertEquals(expected.remove("k" + i), q.remove("k" + i));
+            }
+            assertEquals(expected.entrySet(), q.entrySet());
+            assertEquals(expected.size(), q.size());
+        }
+    }
 }
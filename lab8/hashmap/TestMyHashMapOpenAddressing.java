@@ -0,0 +1,92 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/** Tests of the open-addressing hash map. */
+public class TestMyHashMapOpenAddressing {
+
+    @Test
+    public void sanityTest() {
+        MyHashMapOpenAddressing<String, Integer> b = new MyHashMapOpenAddressing<>();
+        assertEquals(0, b.size());
+        assertFalse(b.containsKey("hi"));
+        assertNull(b.get("hi"));
+        b.put("hi", 1);
+        assertTrue(b.containsKey("hi"));
+        assertEquals(1, b.get("hi").intValue());
+        b.put("hi", 2);
+        assertEquals(1, b.size());
+        assertEquals(2, b.get("hi").intValue());
+        b.clear();
+        assertEquals(0, b.size());
+        assertFalse(b.containsKey("hi"));
+    }
+
+    @Test
+    public void resizeAndKeySetTest() {
+        MyHashMapOpenAddressing<String, Integer> b = new MyHashMapOpenAddressing<>(1, 0.5);
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < 455; i++) {
+            b.put("hi" + i, i);
+            values.add("hi" + i);
+        }
+        assertEquals(455, b.size());
+        assertEquals(values, b.keySet());
+        Set<String> iterated = new HashSet<>();
+        for (String key : b) {
+            assertTrue(iterated.add(key));
+        }
+        assertEquals(values, iterated);
+        for (int i = 0; i < 455; i++) {
+            assertEquals(i, b.get("hi" + i).intValue());
+        }
+    }
+
+    /** Removing keys that share a home slot must keep the others reachable. */
+    @Test
+    public void removeCollidingTest() {
+        MyHashMapOpenAddressing<Integer, String> b = new MyHashMapOpenAddressing<>(64, 0.9);
+        for (int i = 0; i < 8; i++) {
+            b.put(i * 64, "v" + i);
+        }
+        b.put(1, "one");
+        assertEquals("v3", b.remove(3 * 64));
+        assertNull(b.remove(3 * 64));
+        assertNull(b.remove(0, "wrong"));
+        assertEquals("v0", b.remove(0, "v0"));
+        for (int i = 1; i < 8; i++) {
+            assertEquals(i != 3, b.containsKey(i * 64));
+        }
+        assertEquals("one", b.get(1));
+        assertEquals(7, b.size());
+    }
+
+    @Test
+    public void randomizedTest() {
+        Random random = new Random(61);
+        MyHashMapOpenAddressing<Integer, Integer> b = new MyHashMapOpenAddressing<>();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    b.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), b.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), b.get(key));
+            }
+            assertEquals(expected.size(), b.size());
+        }
+        assertEquals(expected.keySet(), b.keySet());
+    }
+}
@@ -0,0 +1,100 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/** Tests of the int- and long-keyed hash maps. */
+public class TestPrimitiveMyHashMap {
+
+    @Test
+    public void intSanityTest() {
+        IntMyHashMap<String> b = new IntMyHashMap<>();
+        assertEquals(0, b.size());
+        assertNull(b.get(0));
+        b.put(0, "zero");
+        b.put(-1, "minus one");
+        b.put(Integer.MIN_VALUE, "min");
+        assertEquals("zero", b.get(0));
+        assertEquals("minus one", b.get(Integer.valueOf(-1)));
+        assertTrue(b.containsKey(Integer.MIN_VALUE));
+        b.put(0, "nought");
+        assertEquals(3, b.size());
+        assertEquals("nought", b.remove(0));
+        assertFalse(b.containsKey(0));
+        assertNull(b.remove(-1, "wrong"));
+        assertEquals("minus one", b.remove(-1, "minus one"));
+        assertEquals(1, b.size());
+        b.clear();
+        assertEquals(0, b.size());
+        assertFalse(b.containsKey(Integer.MIN_VALUE));
+    }
+
+    /** The load factor stays at most maxLoad, which may exceed 1 as in MyHashMap. */
+    @Test
+    public void loadFactorTest() {
+        IntMyHashMap<Integer> b = new IntMyHashMap<>(1, 4);
+        for (int i = 0; i < 1000; i++) {
+            b.put(i, i);
+        }
+        assertEquals(1000, b.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, b.get(i).intValue());
+        }
+        assertEquals(1000, b.keySet().size());
+    }
+
+    @Test
+    public void intRandomizedTest() {
+        Random random = new Random(61);
+        IntMyHashMap<Integer> b = new IntMyHashMap<>();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            switch (random.nextInt(3)) {
+                case 0:
+                    b.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), b.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), b.get(key));
+            }
+            assertEquals(expected.size(), b.size());
+        }
+        assertEquals(expected.keySet(), b.keySet());
+    }
+
+    @Test
+    public void longRandomizedTest() {
+        Random random = new Random(61);
+        LongMyHashMap<Integer> b = new LongMyHashMap<>(4, 0.5);
+        HashMap<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            long key = (random.nextInt(2000) - 1000L) << 32;
+            switch (random.nextInt(3)) {
+                case 0:
+                    b.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), b.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), b.get(key));
+            }
+            assertEquals(expected.size(), b.size());
+        }
+        assertEquals(expected.keySet(), b.keySet());
+        int count = 0;
+        for (long key : b.keys()) {
+            assertTrue(expected.containsKey(key));
+            count += 1;
+        }
+        assertEquals(expected.size(), count);
+    }
+}
@@ -4,13 +4,19 @@ import edu.princeton.cs.algs4.Stopwatch;
 
 import java.io.IOException;
 import java.util.Scanner;
+import java.util.function.BiConsumer;
 
+import hashmap.ConcurrentMyHashMap;
+import hashmap.HashStrategy;
 import hashmap.Map61B;
+import hashmap.MyHashMap;
 import hashmap.MyHashMapALBuckets;
 import hashmap.MyHashMapLLBuckets;
 import hashmap.MyHashMapTSBuckets;
 import hashmap.MyHashMapHSBuckets;
 import hashmap.MyHashMapPQBuckets;
+import hashmap.MyHashMapHybridBuckets;
+import hashmap.MyHashMapOpenAddressing;
 
 /** Performs a timing test on three different set implementations.
  *  @author Neil Kulkarni adapted from Josh Hug, Brendan Hu
@@ -42,6 +48,20 @@ public class BucketsSpeedTest {
             timeRandomMap61B(new MyHashMapTSBuckets<>(), N, L);
             timeRandomMap61B(new MyHashMapHSBuckets<>(), N, L);
             timeRandomMap61B(new MyHashMapPQBuckets<>(), N, L);
+            timeRandomMap61B(new MyHashMapHybridBuckets<>(), N, L);
+            timeRandomMap61B(new MyHashMapOpenAddressing<>(), N, L);
+
+            System.out.print("\nWould you like to time multi-threaded inserts? (y/n)");
+            String threaded = input.nextLine();
+            if (threaded.equalsIgnoreCase("y") || threaded.equalsIgnoreCase("yes")) {
+                timeConcurrentInserts(N, L);
+            }
+
+            System.out.print("\nWould you like to see hash quality diagnostics? (y/n)");
+            String diagnostics = input.nextLine();
+            if (diagnostics.equalsIgnoreCase("y") || diagnostics.equalsIgnoreCase("yes")) {
+                printHashQuality(N, L);
+            }
 
             System.out.print("\nWould you like to try more timed-tests? (y/n)");
             repeat = input.nextLine();
@@ -79,6 +99,88 @@ public class BucketsSpeedTest {
         }
     }
 
+    /**
+     * Prints how MyHashMap spreads N keys with each hash strategy, for
+     * random strings of length L and for integer ids handed out in blocks
+     * of 1024, whose hash codes differ only in their high bits.
+     */
+    public static void printHashQuality(int N, int L) {
+        HashStrategy[] strategies = {HashStrategy.IDENTITY, HashStrategy.MURMUR};
+        String[] names = {"hashCode()", "murmur"};
+        for (int s = 0; s < strategies.length; s++) {
+            MyHashMap<String, Integer> strings = new MyHashMap<>(16, 0.75, false, strategies[s]);
+            MyHashMap<Integer, Integer> ids = new MyHashMap<>(16, 0.75, false, strategies[s]);
+            for (int i = 0; i < N; i++) {
+                strings.put(StringUtils.randomString(L), i);
+                ids.put(i * 1024, i);
+            }
+            System.out.println(names[s] + ", random strings: " + strings.stats().summary());
+            System.out.println(names[s] + ", block ids: " + ids.stats().summary());
+        }
+    }
+
+    /**
+     * Inserts the same N random strings of length L with 1, 2, 4, ... threads,
+     * up to the number of processors, into a ConcurrentMyHashMap and into a
+     * MyHashMapOpenAddressing guarded by a single lock, and prints the
+     * throughput of each. The strings are generated before timing.
+     */
+    public static void timeConcurrentInserts(int N, int L) {
+        String[] keys = new String[N];
+        for (int i = 0; i < N; i++) {
+            keys[i] = StringUtils.randomString(L);
+        }
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            Map61B<String, Integer> concurrent = new ConcurrentMyHashMap<>();
+            Map61B<String, Integer> locked = new MyHashMapOpenAddressing<>();
+            double concurrentTime = insertConcurrently(concurrent::put, keys, threads);
+            double lockedTime = insertConcurrently((k, v) -> {
+                synchronized (locked) {
+                    locked.put(k, v);
+                }
+            }, keys, threads);
+            System.out.printf("%d thread(s): %s: %.0f puts/sec, "
+                    + "synchronized %s: %.0f puts/sec\n", threads,
+                    concurrent.getClass().getSimpleName(), N / concurrentTime,
+                    locked.getClass().getSimpleName(), N / lockedTime);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns time needed for THREADS threads, each taking an equal share of
+     * KEYS, to pass every key of their share and its index to PUT.
+     */
+    public static double insertConcurrently(BiConsumer<String, Integer> put,
+                                            String[] keys, int threads) {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) keys.length * t / threads);
+            int to = (int) ((long) keys.length * (t + 1) / threads);
+            workers[t] = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    put.accept(keys[i], i);
+                }
+            });
+        }
+        Stopwatch sw = new Stopwatch();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return Math.max(sw.elapsedTime(), 1e-3);
+    }
+
     /**
      * Waits for the user on other side of Scanner
      * to enter a positive int,
@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks whole gitlet commands, including loading and saving
+ * .gitlet/.repo, against synthetic repositories of varying shape.
+ *
+ * Each benchmark takes the state that puts the repository into the
+ * condition the command needs (a modified file for add, a staged file
+ * for commit, a diverged branch for merge), so that no command ever
+ * hits an error path and exits the JVM.
+ *
+ * @author Tsrigo
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CommandBenchmark {
+
+    /** A synthetic repository built once per trial. */
+    @State(Scope.Thread)
+    public static class Repo {
+        /** Number of files in every commit. */
+        @Param({"100", "1000"})
+        public int files;
+        /** Number of commits on master. */
+        @Param({"10", "100"})
+        public int commits;
+        /** Number of branches besides master. */
+        @Param({"4"})
+        public int branches;
+        /** File size distribution; one of SMALL, MIXED or LARGE. */
+        @Param({"SMALL", "MIXED"})
+        public String sizes;
+
+        SyntheticRepo repo;
+
+        @Setup(Level.Trial)
+        public void build() {
+            repo = SyntheticRepo.build(files, commits, Math.max(1, branches),
+                    SyntheticRepo.SizeDistribution.valueOf(sizes), 61);
+        }
+    }
+
+    /** A repository with one freshly modified, unstaged file. */
+    public static class DirtyRepo extends Repo {
+        String file;
+
+        @Setup(Level.Invocation)
+        public void modify() {
+            int i = repo.randomFile();
+            repo.touch(i);
+            file = SyntheticRepo.fileName(i);
+        }
+    }
+
+    /** A repository with one freshly modified file staged for addition. */
+    public static class StagedRepo extends Repo {
+        @Setup(Level.Invocation)
+        public void stage() {
+            int i = repo.randomFile();
+            repo.touch(i);
+            repo.run("add", SyntheticRepo.fileName(i));
+        }
+    }
+
+    /** A repository that alternates between master and a diverged branch. */
+    public static class SwitchingRepo extends Repo {
+        boolean onMaster = true;
+
+        String next() {
+            onMaster = !onMaster;
+            return onMaster ? "master" : SyntheticRepo.branchName(0);
+        }
+    }
+
+    /**
+     * A repository whose master and a fresh topic branch have each gained
+     * a commit touching a different file since they forked.
+     */
+    public static class DivergedRepo extends Repo {
+        int topics;
+        String topic;
+
+        @Setup(Level.Invocation)
+        public void diverge() {
+            topic = "topic" + topics++;
+            int onMaster = repo.randomFile();
+            int onTopic = (onMaster + 1) % repo.files();
+            repo.run("branch", topic);
+            repo.touch(onMaster);
+            repo.run("add", SyntheticRepo.fileName(onMaster));
+            repo.run("commit", "master side of " + topic);
+            repo.run("checkout", topic);
+            repo.touch(onTopic);
+            repo.run("add", SyntheticRepo.fileName(onTopic));
+            repo.run("commit", "topic side of " + topic);
+            repo.run("checkout", "master");
+        }
+    }
+
+    @Benchmark
+    public void add(DirtyRepo state) {
+        state.repo.run("add", state.file);
+    }
+
+    @Benchmark
+    public void commit(StagedRepo state) {
+        state.repo.run("commit", "benchmark commit");
+    }
+
+    @Benchmark
+    public void status(Repo state) {
+        state.repo.run("status");
+    }
+
+    @Benchmark
+    public void checkoutBranch(SwitchingRepo state) {
+        state.repo.run("checkout", state.next());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 20, batchSize = 1)
+    public void merge(DivergedRepo state) {
+        state.repo.run("merge", state.topic);
+    }
+}
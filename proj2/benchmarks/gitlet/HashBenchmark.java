@@ -0,0 +1,54 @@
+package gitlet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Utils.sha1 over blobs of the sizes gitlet typically hashes.
+ *
+ * @author Tsrigo
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class HashBenchmark {
+
+    /** Size of the hashed blob in bytes. */
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    byte[] blob;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        blob = new byte[size];
+        new Random(61).nextBytes(blob);
+    }
+
+    @Benchmark
+    public String sha1Blob() {
+        return Utils.sha1((Object) blob);
+    }
+
+    @Benchmark
+    public String sha1Commit() {
+        return Utils.sha1("{f1.dat=", "0123456789abcdef0123456789abcdef01234567",
+                "}message", "Wed Dec 31 16:00:00 1969 -0800", "null", "null");
+    }
+}
@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/**
+ * Builds a synthetic gitlet repository in a scratch directory and drives
+ * commands against it through Main.main, exactly as the command line would.
+ *
+ * Repository.CWD is fixed when the class is first loaded, so only one
+ * synthetic repository may exist per JVM. The benchmarks are therefore
+ * always run forked, with a fresh JVM per parameter combination.
+ *
+ * @author Tsrigo
+ */
+class SyntheticRepo {
+
+    /** How large the generated files are. */
+    enum SizeDistribution {
+        /** Source-file sized: 64 bytes to 4 KiB. */
+        SMALL,
+        /** Mostly small files with one in twenty between 64 KiB and 1 MiB. */
+        MIXED,
+        /** Asset sized: 64 KiB to 1 MiB. */
+        LARGE;
+
+        int nextSize(Random random) {
+            switch (this) {
+                case SMALL:
+                    return between(random, 64, 4 << 10);
+                case LARGE:
+                    return between(random, 64 << 10, 1 << 20);
+                default:
+                    return random.nextInt(20) == 0
+                            ? between(random, 64 << 10, 1 << 20)
+                            : between(random, 64, 4 << 10);
+            }
+        }
+
+        private static int between(Random random, int lo, int hi) {
+            return lo + random.nextInt(hi - lo);
+        }
+    }
+
+    /** A stream that drops everything written to it. */
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    /** The working directory of the repository. */
+    private final File dir;
+    /** Number of files in every commit. */
+    private final int files;
+    /** Size distribution of the files. */
+    private final SizeDistribution sizes;
+    /** Source of file contents and of which files each commit touches. */
+    private final Random random;
+
+    private SyntheticRepo(File dir, int files, SizeDistribution sizes, long seed) {
+        this.dir = dir;
+        this.files = files;
+        this.sizes = sizes;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates a repository with FILES files, COMMITS commits on master and
+     * BRANCHES further branches, each forked from an evenly spaced point of
+     * master's history and given one commit of its own.
+     */
+    static SyntheticRepo build(int files, int commits, int branches,
+                               SizeDistribution sizes, long seed) {
+        File dir;
+        try {
+            dir = Files.createTempDirectory("gitlet-bench").toFile();
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+        System.setProperty("user.dir", dir.getAbsolutePath());
+        if (!Repository.CWD.equals(dir)) {
+            throw new IllegalStateException("gitlet benchmarks must run in a forked JVM");
+        }
+
+        SyntheticRepo repo = new SyntheticRepo(dir, files, sizes, seed);
+        repo.run("init");
+        for (int i = 0; i < files; i++) {
+            repo.touch(i);
+            repo.run("add", fileName(i));
+        }
+        repo.run("commit", "import");
+
+        int branchEvery = Math.max(1, commits / (branches + 1));
+        int created = 0;
+        for (int c = 1; c < commits; c++) {
+            if (created < branches && c % branchEvery == 0) {
+                repo.run("branch", branchName(created));
+                created++;
+            }
+            repo.commitChanges(Math.max(1, files / 10), "commit " + c);
+        }
+        while (created < branches) {
+            repo.run("branch", branchName(created));
+            created++;
+        }
+        for (int b = 0; b < branches; b++) {
+            repo.run("checkout", branchName(b));
+            repo.commitChanges(1, "work on " + branchName(b));
+            repo.run("checkout", "master");
+        }
+        return repo;
+    }
+
+    /** Returns the name of the Ith generated file. */
+    static String fileName(int i) {
+        return "f" + i + ".dat";
+    }
+
+    /** Returns the name of the Ith generated branch. */
+    static String branchName(int i) {
+        return "b" + i;
+    }
+
+    /** Returns the number of files in the repository. */
+    int files() {
+        return files;
+    }
+
+    /** Returns the index of a random file. */
+    int randomFile() {
+        return random.nextInt(files);
+    }
+
+    /** Runs the gitlet command ARGS with its output discarded. */
+    void run(String... args) {
+        PrintStream out = System.out;
+        System.setOut(DISCARD);
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Overwrites the Ith file with fresh random contents. */
+    void touch(int i) {
+        byte[] contents = new byte[sizes.nextSize(random)];
+        random.nextBytes(contents);
+        writeContents(join(dir, fileName(i)), (Object) contents);
+    }
+
+    /** Rewrites, adds and commits N random files with message MSG. */
+    void commitChanges(int n, String msg) {
+        for (int k = 0; k < n; k++) {
+            int i = randomFile();
+            touch(i);
+            run("add", fileName(i));
+        }
+        run("commit", msg);
+    }
+}
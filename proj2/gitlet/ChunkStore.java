@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/**
+ * Storage for large files, kept out of the commit directories.
+ *
+ * A file of more than threshold() bytes is cut into chunks at
+ * content-defined boundaries: a Gear rolling hash, which depends only on the
+ * last 64 bytes read, ends a chunk wherever its top bits are all zero. An
+ * edit therefore only moves the boundaries around it, and every other chunk
+ * hashes as before. Each chunk is stored once, under its SHA-1, in
+ * .gitlet/chunks, and the blob kept for the file is a small pointer listing
+ * its size and chunks. Files are chunked and restored through buffers of at
+ * most MAX_CHUNK bytes, never read whole.
+ *
+ * The threshold is GITLET_LARGE_FILE_THRESHOLD bytes if that environment
+ * variable is set, and DEFAULT_THRESHOLD otherwise.
+ *
+ * @author Tsrigo
+ */
+class ChunkStore {
+    /**
+     * The chunks, fanned out by the first two digits of their SHA-1.
+     */
+    static final File CHUNKS_DIR = join(Repository.GITLET_DIR, "chunks");
+    /**
+     * The size above which files are chunked, unless configured otherwise.
+     */
+    static final long DEFAULT_THRESHOLD = 1 << 20;
+    /**
+     * The bounds on the size of a chunk; the average is about 64 KiB.
+     */
+    static final int MIN_CHUNK = 16 << 10, MAX_CHUNK = 256 << 10;
+    /**
+     * The hash bits that must be zero at a chunk boundary.
+     */
+    private static final long BOUNDARY_MASK = 0xFFFFL << 48;
+    /**
+     * The random value mixed into the hash for each byte value.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private static final long THRESHOLD =
+            threshold(System.getenv("GITLET_LARGE_FILE_THRESHOLD"));
+
+    private static long threshold(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_THRESHOLD;
+        }
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException excp) {
+            return DEFAULT_THRESHOLD;
+        }
+    }
+
+    /**
+     * Returns the size above which files are chunked.
+     */
+    static long threshold() {
+        return THRESHOLD;
+    }
+
+    /**
+     * Returns true if FILE is large enough to be chunked.
+     */
+    static boolean isLarge(File file) {
+        return file.length() > THRESHOLD;
+    }
+
+    /**
+     * Chunks SOURCE, storing the chunks not already stored, and writes the
+     * pointer listing them to POINTER.
+     */
+    static void store(File source, File pointer) {
+        StringBuilder list = new StringBuilder();
+        byte[] chunk = new byte[MAX_CHUNK];
+        byte[] buffer = new byte[MIN_CHUNK];
+        long total = 0;
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            int length = 0;
+            long hash = 0;
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                Trace.read(n);
+                for (int i = 0; i < n; i++) {
+                    chunk[length++] = buffer[i];
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    if (length == MAX_CHUNK
+                            || length >= MIN_CHUNK && (hash & BOUNDARY_MASK) == 0) {
+                        list.append(putChunk(chunk, length)).append('\n');
+                        total += length;
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+            }
+            if (length > 0) {
+                list.append(putChunk(chunk, length)).append('\n');
+                total += length;
+            }
+        } catch (IOException excp) {
+            throw error("Cannot read %s: %s", source, excp.getMessage());
+        }
+        writeContents(pointer, "size " + total + "\n" + list);
+    }
+
+    /**
+     * Appends the file described by POINTER to OUT, transferring one chunk
+     * at a time.
+     */
+    static void transfer(File pointer, FileChannel out) {
+        for (String sha : chunks(pointer)) {
+            transferContents(chunkFile(sha), out);
+        }
+    }
+
+    /**
+     * Returns the whole contents of the file described by POINTER.
+     */
+    static byte[] read(File pointer) {
+        int size = (int) Math.min(size(pointer), Integer.MAX_VALUE - 8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        try {
+            for (String sha : chunks(pointer)) {
+                File chunk = chunkFile(sha);
+                Trace.statted(1);
+                Trace.read(chunk.length());
+                Files.copy(chunk.toPath(), out);
+            }
+        } catch (IOException excp) {
+            throw error("Cannot read chunks of %s: %s", pointer, excp.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the size of the file described by POINTER.
+     */
+    static long size(File pointer) {
+        String header = readContentsAsString(pointer);
+        return Long.parseLong(header.substring("size ".length(), header.indexOf('\n')));
+    }
+
+    /**
+     * Deletes every stored chunk that none of POINTERS lists.
+     */
+    static void retain(Collection<File> pointers) {
+        Set<String> live = new HashSet<>();
+        for (File pointer : pointers) {
+            live.addAll(chunks(pointer));
+        }
+        File[] dirs = CHUNKS_DIR.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            for (String rest : plainFilenamesIn(dir)) {
+                if (!live.contains(dir.getName() + rest)) {
+                    join(dir, rest).delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private static List<String> chunks(File pointer) {
+        String[] lines = readContentsAsString(pointer).split("\n");
+        List<String> result = new ArrayList<>(lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].isEmpty()) {
+                result.add(lines[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the first LENGTH bytes of CHUNK unless they already are, and
+     * returns their SHA-1.
+     */
+    private static String putChunk(byte[] chunk, int length) {
+        String sha;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(chunk, 0, length);
+            sha = hex(md.digest());
+            Trace.hashed(length);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+        File file = chunkFile(sha);
+        Trace.statted(1);
+        if (file.exists()) {
+            return sha;
+        }
+        file.getParentFile().mkdirs();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            out.write(chunk, 0, length);
+        } catch (IOException excp) {
+            throw error("Cannot write chunk %s: %s", sha, excp.getMessage());
+        }
+        Trace.written(length);
+        return sha;
+    }
+
+    private static File chunkFile(String sha) {
+        return join(CHUNKS_DIR, sha.substring(0, 2), sha.substring(2));
+    }
+}
@@ -14,6 +14,12 @@ import static gitlet.Utils.*;
  * @author Tsrigo
  */
 public class Commit implements Serializable {
+    /**
+     * The serial version of commits written before any method was added,
+     * kept so that they can still be read.
+     */
+    private static final long serialVersionUID = 1397511618126831346L;
+
     /**
      * The message of this Commit.
      */
@@ -77,6 +83,15 @@ public class Commit implements Serializable {
         return this.message;
     }
 
+    /**
+     * Gets the timestamp of this commit.
+     *
+     * @return the timestamp of this commit.
+     */
+    public String getTimestamp() {
+        return this.timestamp;
+    }
+
     /**
      * Gets the sha-1 of the given filename of this commit has snapshot.
      *
@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line diffs between two versions of a file.
+ *
+ *  The common prefix and suffix are matched directly and the middle is
+ *  compared with Myers' O((N+M)D) algorithm, so small edits to large files
+ *  stay cheap.  Beyond MAX_EDITS differing lines the middle is treated as
+ *  entirely rewritten rather than searched for a minimal script.
+ *
+ *  @author Tsrigo
+ */
+class Diff {
+
+    /** The largest edit distance searched for by Myers' algorithm. */
+    static final int MAX_EDITS = 2048;
+
+    /** Returns the lines of CONTENTS, without their line terminators. */
+    static String[] lines(byte[] contents) {
+        String text = new String(contents, StandardCharsets.UTF_8);
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.split("\n", -1);
+    }
+
+    /** Returns an array that gives, for each line of B, the index of the
+     *  line of A it is unchanged from, or -1 if it was added or changed. */
+    static int[] match(String[] a, String[] b) {
+        int[] result = new int[b.length];
+        Arrays.fill(result, -1);
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length
+               && a[prefix].equals(b[prefix])) {
+            result[prefix] = prefix;
+            prefix += 1;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+               && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+            result[b.length - 1 - suffix] = a.length - 1 - suffix;
+            suffix += 1;
+        }
+        myers(a, prefix, a.length - suffix, b, prefix, b.length - suffix,
+              result);
+        return result;
+    }
+
+    /** Records in RESULT the matches of a shortest edit script between
+     *  A[A0 .. A1) and B[B0 .. B1). */
+    private static void myers(String[] a, int a0, int a1,
+                              String[] b, int b0, int b1, int[] result) {
+        int n = a1 - a0, m = b1 - b0;
+        if (n == 0 || m == 0) {
+            return;
+        }
+        int max = Math.min(n + m, MAX_EDITS);
+        int offset = max + 1;
+        int[] v = new int[2 * offset + 1];
+        List<int[]> trace = new ArrayList<>();
+        int edits = -1;
+        for (int d = 0; d <= max && edits < 0; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                boolean down = k == -d
+                    || (k != d && v[offset + k - 1] < v[offset + k + 1]);
+                int x = down ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[a0 + x].equals(b[b0 + y])) {
+                    x += 1;
+                    y += 1;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    edits = d;
+                    break;
+                }
+            }
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+        }
+        if (edits < 0) {
+            return;
+        }
+
+        int x = n, y = m;
+        for (int d = edits; d > 0; d -= 1) {
+            int[] prev = trace.get(d - 1);
+            int k = x - y;
+            boolean down = k == -d
+                || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1]);
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = prev[prevK + d - 1];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x -= 1;
+                y -= 1;
+                result[b0 + y] = a0 + x;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            x -= 1;
+            y -= 1;
+            result[b0 + y] = a0 + x;
+        }
+    }
+}
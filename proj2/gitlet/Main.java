@@ -1,7 +1,14 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
+import java.util.Set;
 
 import static gitlet.Utils.*;
 
@@ -28,6 +35,15 @@ public class Main {
         ARG_LENGTH.put("rm-branch", 2);
         ARG_LENGTH.put("reset", 2);
         ARG_LENGTH.put("merge", 2);
+        ARG_LENGTH.put("sparse-checkout", THREE_ARG);
+        ARG_LENGTH.put("reflog", 2);
+        ARG_LENGTH.put("blame", 2);
+        ARG_LENGTH.put("bisect", FOUR_ARG);
+        ARG_LENGTH.put("stash", 2);
+        ARG_LENGTH.put("diff", 2);
+        ARG_LENGTH.put("pack-refs", 1);
+        ARG_LENGTH.put("shallow", 2);
+        ARG_LENGTH.put("watch", 1);
     }
 
     private static void checkArglength(String[] args) {
@@ -61,6 +77,26 @@ public class Main {
                     printError("Please enter a file to be removed.");
                 }
             }
+            case "bisect" -> {
+                if (givenNum < std) {
+                    printError("Incorrect operands.");
+                }
+            }
+            case "blame" -> {
+                if (givenNum < std) {
+                    printError("Incorrect operands.");
+                }
+            }
+            case "shallow" -> {
+                if (givenNum < std) {
+                    printError("Incorrect operands.");
+                }
+            }
+            case "sparse-checkout" -> {
+                if (givenNum < 2) {
+                    printError("Incorrect operands.");
+                }
+            }
             case "checkout" -> {
                 if (givenNum == THREE_ARG && !args[1].equals("--")) {
                     printError("Incorrect operands.");
@@ -79,14 +115,54 @@ public class Main {
      */
 
     public static final File REPO_DIR = join(Repository.GITLET_DIR, ".repo");
+    /**
+     * Held exclusively by the one process allowed to modify the repository.
+     */
+    public static final File LOCK_FILE = join(Repository.GITLET_DIR, "index.lock");
+    /**
+     * Commands that never modify the repository. They read whatever snapshot
+     * of .repo is in place without taking the lock, and never write it back.
+     */
+    private static final Set<String> READ_ONLY = Set.of("log", "global-log", "find", "status", "reflog",
+            "blame", "diff", "watch");
+    /**
+     * Commands that only move branches. They write the refs they moved and
+     * their reflog entries, and leave .repo as it is.
+     */
+    private static final Set<String> REFS_ONLY = Set.of("branch", "rm-branch", "pack-refs");
+
+    private static FileLock lock;
 
     public static void main(String[] args) {
         checkArglength(args);
         String firstArg = args[0];
+        boolean readOnly = READ_ONLY.contains(firstArg);
+        Trace.begin(firstArg);
+        if (!readOnly && Repository.GITLET_DIR.isDirectory()) {
+            Trace.phase("lock");
+            lockRepo();
+        }
+        try {
+            run(firstArg, args, readOnly);
+        } finally {
+            unlockRepo();
+        }
+    }
+
+    private static void run(String firstArg, String[] args, boolean readOnly) {
+        Trace.phase("load");
+        Refs refs = new Refs();
+        if (readOnly && REPO_DIR.exists()) {
+            /* Refs are written only after .repo, so reading them first means
+             * the .repo read next holds every commit they name. */
+            refs.readAll();
+        }
         Repository repo = REPO_DIR.exists() ? readRepo() : null;
         if (repo == null && !firstArg.equals("init")) {
             printError("Not in an initialized Gitlet directory.");
         }
+        boolean migrated = repo != null && repo.useRefs(refs);
+        Trace.phase(firstArg);
         switch (firstArg) {
             case "init" -> {
                 repo = Repository.init();
@@ -110,9 +186,26 @@ public class Main {
             case "rm-branch" -> repo.removeBranch(args[1]);
             case "reset" -> repo.reset(args[1]);
             case "merge" -> repo.merge(args[1]);
+            case "blame" -> repo.blame(args[1]);
+            case "diff" -> repo.diff(args.length == 2 ? args[1] : null);
+            case "stash" -> repo.stash(args.length == 2 ? args[1] : null);
+            case "bisect" -> repo.bisect(args[1], args[2], args[THREE_ARG]);
+            case "reflog" -> repo.reflog(args.length == 2 ? args[1] : null);
+            case "pack-refs" -> repo.packRefs();
+            case "shallow" -> repo.shallow(args[1]);
+            case "watch" -> Watcher.run();
+            case "sparse-checkout" -> repo.sparseCheckout(args[1],
+                    args.length == THREE_ARG ? args[2] : null);
             default -> printError("No command with that name exists.");
         }
-        saveRepo(repo);
+        if (!readOnly) {
+            Trace.phase("save");
+            if (REFS_ONLY.contains(firstArg) && !migrated) {
+                repo.saveRefs();
+            } else {
+                saveRepo(repo);
+            }
+        }
     }
 
 
@@ -121,8 +214,47 @@ public class Main {
         System.exit(0);
     }
 
+    /**
+     * Writes REPO to a temporary file and renames it over .repo, so that
+     * lock-free readers see either the old or the new repository, never
+     * a partly written one, and then writes the branches it moved.
+     */
     private static void saveRepo(Repository repo) {
-        writeObject(REPO_DIR, repo);
+        File tmp = join(Repository.GITLET_DIR, ".repo.tmp");
+        writeObject(tmp, repo);
+        try {
+            Files.move(tmp.toPath(), REPO_DIR.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw error("Cannot save the repository: %s", excp.getMessage());
+        }
+        repo.saveRefs();
+    }
+
+    /**
+     * Blocks until this process holds the repository lock. The lock is
+     * released when the process exits, however it exits.
+     */
+    private static void lockRepo() {
+        try {
+            FileChannel channel = FileChannel.open(LOCK_FILE.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = channel.lock();
+        } catch (IOException excp) {
+            throw error("Cannot lock the repository: %s", excp.getMessage());
+        }
+    }
+
+    private static void unlockRepo() {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.channel().close();
+        } catch (IOException excp) {
+            throw error("Cannot unlock the repository: %s", excp.getMessage());
+        }
+        lock = null;
     }
 
     private static Repository readRepo() {
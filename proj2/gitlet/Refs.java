@@ -0,0 +1,310 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/**
+ * The branches of a repository, stored the way git stores them.
+ *
+ * A branch is either a loose ref, a file .gitlet/refs/heads/NAME holding
+ * the SHA-1 of its commit, or a line "SHA-1 NAME" in .gitlet/packed-refs.
+ * A loose ref overrides a packed one, so moving a branch only writes its
+ * small loose file. Every move is also appended to the branch's reflog,
+ * .gitlet/logs/refs/heads/NAME, so earlier heads can always be recovered.
+ *
+ * Moves are held in memory until flush(), which the command calls only
+ * once the repository they point into has been saved, and each ref file is
+ * replaced by renaming a complete new one over it. Commands that do not
+ * take the lock call readAll() before loading the repository, so every
+ * head they see names a commit the repository they load already holds.
+ *
+ * @author Tsrigo
+ */
+class Refs {
+    /**
+     * The loose branch refs.
+     */
+    static final File HEADS_DIR = join(Repository.GITLET_DIR, "refs", "heads");
+    /**
+     * The packed branch refs.
+     */
+    static final File PACKED_REFS = join(Repository.GITLET_DIR, "packed-refs");
+    /**
+     * The reflogs of the branches.
+     */
+    static final File LOGS_DIR = join(Repository.GITLET_DIR, "logs", "refs", "heads");
+    /**
+     * The old value recorded in the reflog when a branch is created.
+     */
+    static final String NO_COMMIT = "0".repeat(Utils.UID_LENGTH);
+    /**
+     * Where a ref is written before it is renamed into place, outside the
+     * directories branches are listed from.
+     */
+    private static final File TMP_REF = join(Repository.GITLET_DIR, "ref.tmp");
+
+    /**
+     * The packed refs, read when first needed.
+     */
+    private HashMap<String, String> packed;
+    /**
+     * Every branch as read by readAll(), or null to read refs when asked.
+     */
+    private HashMap<String, String> snapshot;
+    /**
+     * The moves not yet written by flush(), by branch. A null value marks a
+     * deleted branch.
+     */
+    private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+    /**
+     * The reflog entries not yet written by flush(), as branch and line.
+     */
+    private final List<String[]> pendingLogs = new ArrayList<>();
+
+    /**
+     * Reads every branch now, so that later lookups do not see moves made
+     * by other processes in the meantime.
+     */
+    void readAll() {
+        snapshot = new HashMap<>(packed());
+        List<String> loose = plainFilenamesIn(HEADS_DIR);
+        if (loose != null) {
+            for (String branch : loose) {
+                snapshot.put(branch, readContentsAsString(join(HEADS_DIR, branch)).trim());
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-1 of the commit BRANCH points to, or null if there
+     * is no such branch.
+     */
+    String get(String branch) {
+        if (pending.containsKey(branch)) {
+            return pending.get(branch);
+        }
+        if (snapshot != null) {
+            return snapshot.get(branch);
+        }
+        File loose = join(HEADS_DIR, branch);
+        if (loose.isFile()) {
+            return readContentsAsString(loose).trim();
+        }
+        return packed().get(branch);
+    }
+
+    /**
+     * Returns true if BRANCH exists.
+     */
+    boolean contains(String branch) {
+        return get(branch) != null;
+    }
+
+    /**
+     * Returns the names of all branches, in order.
+     */
+    Set<String> names() {
+        TreeSet<String> names;
+        if (snapshot != null) {
+            names = new TreeSet<>(snapshot.keySet());
+        } else {
+            names = new TreeSet<>(packed().keySet());
+            List<String> loose = plainFilenamesIn(HEADS_DIR);
+            if (loose != null) {
+                names.addAll(loose);
+            }
+        }
+        for (Map.Entry<String, String> move : pending.entrySet()) {
+            if (move.getValue() == null) {
+                names.remove(move.getKey());
+            } else {
+                names.add(move.getKey());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Points BRANCH at the commit COMMITSHA, recording MESSAGE in its reflog,
+     * once flushed.
+     */
+    void update(String branch, String commitSha, String message) {
+        String old = get(branch);
+        pending.put(branch, commitSha);
+        log(branch, old == null ? NO_COMMIT : old, commitSha, message);
+    }
+
+    /**
+     * Deletes BRANCH. Its reflog is kept, ending with the deletion, so that
+     * the commit it pointed to can still be found, once flushed.
+     */
+    void delete(String branch) {
+        String old = get(branch);
+        if (old == null) {
+            return;
+        }
+        pending.put(branch, null);
+        log(branch, old, NO_COMMIT, "branch: deleted");
+    }
+
+    /**
+     * Writes the moves and reflog entries made since the last flush. A
+     * deleted branch leaves packed-refs before its loose ref goes, so that
+     * no reader finds an older packed head in between.
+     */
+    void flush() {
+        boolean repack = false;
+        for (Map.Entry<String, String> move : pending.entrySet()) {
+            if (move.getValue() == null && packed().remove(move.getKey()) != null) {
+                repack = true;
+            }
+        }
+        if (repack) {
+            writePacked();
+        }
+        for (Map.Entry<String, String> move : pending.entrySet()) {
+            File loose = join(HEADS_DIR, move.getKey());
+            if (move.getValue() == null) {
+                loose.delete();
+            } else {
+                loose.getParentFile().mkdirs();
+                writeAtomically(loose, TMP_REF, move.getValue() + "\n");
+            }
+        }
+        for (String[] entry : pendingLogs) {
+            appendLog(entry[0], entry[1]);
+        }
+        pending.clear();
+        pendingLogs.clear();
+    }
+
+    /**
+     * Moves every loose ref into packed-refs.
+     */
+    void pack() {
+        flush();
+        List<String> loose = plainFilenamesIn(HEADS_DIR);
+        if (loose == null || loose.isEmpty()) {
+            return;
+        }
+        for (String branch : loose) {
+            packed().put(branch, get(branch));
+        }
+        writePacked();
+        for (String branch : loose) {
+            join(HEADS_DIR, branch).delete();
+        }
+    }
+
+    /**
+     * Returns the reflog of BRANCH, newest entry first. Each entry is an
+     * array of the old SHA-1, the new SHA-1, the time in seconds since the
+     * epoch and the message.
+     */
+    List<String[]> reflog(String branch) {
+        List<String[]> entries = new ArrayList<>();
+        File log = join(LOGS_DIR, branch);
+        if (!log.isFile()) {
+            return entries;
+        }
+        for (String line : readContentsAsString(log).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String[] fields = line.substring(0, tab).split(" ");
+            entries.add(new String[] {fields[0], fields[1], fields[2], line.substring(tab + 1)});
+        }
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /**
+     * Removes from every reflog, including those of deleted branches, the
+     * entries that moved a branch to a commit in DROPPED or deleted a branch
+     * that pointed to one. A reflog left empty is deleted.
+     */
+    void prune(Set<String> dropped) {
+        List<String> logs = plainFilenamesIn(LOGS_DIR);
+        if (logs == null) {
+            return;
+        }
+        for (String branch : logs) {
+            File log = join(LOGS_DIR, branch);
+            StringBuilder kept = new StringBuilder();
+            boolean changed = false;
+            for (String line : readContentsAsString(log).split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.substring(0, line.indexOf('\t')).split(" ");
+                String target = fields[1].equals(NO_COMMIT) ? fields[0] : fields[1];
+                if (dropped.contains(target)) {
+                    changed = true;
+                } else {
+                    kept.append(line).append('\n');
+                }
+            }
+            if (kept.length() == 0) {
+                log.delete();
+            } else if (changed) {
+                writeAtomically(log, TMP_REF, kept.toString());
+            }
+        }
+    }
+
+    private HashMap<String, String> packed() {
+        if (packed == null) {
+            packed = new HashMap<>();
+            if (PACKED_REFS.isFile()) {
+                for (String line : readContentsAsString(PACKED_REFS).split("\n")) {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        packed.put(line.substring(space + 1), line.substring(0, space));
+                    }
+                }
+            }
+        }
+        return packed;
+    }
+
+    private void writePacked() {
+        StringBuilder out = new StringBuilder();
+        for (String branch : new TreeSet<>(packed.keySet())) {
+            out.append(packed.get(branch)).append(' ').append(branch).append('\n');
+        }
+        writeAtomically(PACKED_REFS, TMP_REF, out.toString());
+    }
+
+    private void log(String branch, String old, String now, String message) {
+        String line = old + " " + now + " " + System.currentTimeMillis() / 1000
+                + "\t" + message.replace('\n', ' ') + "\n";
+        pendingLogs.add(new String[] {branch, line});
+    }
+
+    private void appendLog(String branch, String line) {
+        File log = join(LOGS_DIR, branch);
+        log.getParentFile().mkdirs();
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.write(log.toPath(), bytes,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw error("Cannot write reflog of %s: %s", branch, excp.getMessage());
+        }
+        Trace.written(bytes.length);
+    }
+}
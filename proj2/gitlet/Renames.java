@@ -0,0 +1,195 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/** Rename and copy detection between two snapshots, each a map from file
+ *  name to blob SHA-1.
+ *
+ *  Files whose blob id reappears under another name are paired first,
+ *  without reading them.  The remaining removed and added files are
+ *  compared by content fingerprint, the bytes of each distinct line.  Two
+ *  files can only reach MIN_SCORE if their sizes are within that ratio, so
+ *  candidates are looked up in an index of sources ordered by size, and
+ *  at most MAX_PAIRS pairs are fingerprinted in all.  Files big enough
+ *  for the chunk store are only ever paired by blob id.
+ *
+ *  @author Tsrigo
+ */
+class Renames {
+
+    /** The least similarity, in percent, for two files to be paired. */
+    static final int MIN_SCORE = 50;
+    /** The most pairs compared by content before giving up. */
+    static final int MAX_PAIRS = 10000;
+
+    /** A file of the new snapshot that came from one of the old. */
+    static class Pair {
+        /** The name in the old and in the new snapshot. */
+        final String source, target;
+        /** Similarity in percent. */
+        final int score;
+        /** True if the source still exists in the new snapshot. */
+        final boolean copy;
+
+        Pair(String source, String target, int score, boolean copy) {
+            this.source = source;
+            this.target = target;
+            this.score = score;
+            this.copy = copy;
+        }
+    }
+
+    /** The contents and the size of each blob. */
+    private final Function<String, byte[]> contents;
+    private final ToLongFunction<String> sizes;
+    /** Fingerprints computed so far, by blob id. */
+    private final HashMap<String, HashMap<Integer, Integer>> fingerprints =
+        new HashMap<>();
+    /** Number of pairs compared by content so far. */
+    private int compared;
+
+    /** A detector reading blobs through CONTENTS, and their sizes
+     *  through SIZES. */
+    Renames(Function<String, byte[]> contents, ToLongFunction<String> sizes) {
+        this.contents = contents;
+        this.sizes = sizes;
+    }
+
+    /** Returns the files of AFTER that were renamed, or if COPIES also
+     *  copied, from files of BEFORE. */
+    List<Pair> detect(Map<String, String> before, Map<String, String> after,
+                      boolean copies) {
+        Set<String> removed = new LinkedHashSet<>();
+        Set<String> added = new LinkedHashSet<>();
+        for (String f : before.keySet()) {
+            if (!after.containsKey(f)) {
+                removed.add(f);
+            }
+        }
+        for (String f : after.keySet()) {
+            if (!before.containsKey(f)) {
+                added.add(f);
+            }
+        }
+        List<Pair> result = new ArrayList<>();
+        pairUp(removed, added, before, after, false, result);
+        if (copies && !added.isEmpty()) {
+            Set<String> sources = new LinkedHashSet<>();
+            for (String f : before.keySet()) {
+                if (after.containsKey(f)) {
+                    sources.add(f);
+                }
+            }
+            pairUp(sources, added, before, after, true, result);
+        }
+        return result;
+    }
+
+    /** Pairs files of TARGETS with files of SOURCES, best matches first,
+     *  appending the pairs to RESULT and removing paired names from both
+     *  sets.  Copied sources may be used more than once. */
+    private void pairUp(Set<String> sources, Set<String> targets,
+                        Map<String, String> before, Map<String, String> after,
+                        boolean copy, List<Pair> result) {
+        HashMap<String, String> byBlob = new HashMap<>();
+        for (String s : sources) {
+            byBlob.putIfAbsent(before.get(s), s);
+        }
+        for (String t : new ArrayList<>(targets)) {
+            String s = byBlob.get(after.get(t));
+            if (s != null) {
+                result.add(new Pair(s, t, 100, copy));
+                targets.remove(t);
+                if (!copy) {
+                    sources.remove(s);
+                    byBlob.remove(after.get(t));
+                }
+            }
+        }
+
+        TreeMap<Long, List<String>> bySize = new TreeMap<>();
+        long largest = ChunkStore.threshold();
+        for (String s : sources) {
+            long size = size(before.get(s));
+            if (size <= largest) {
+                bySize.computeIfAbsent(size, k -> new ArrayList<>()).add(s);
+            }
+        }
+        List<Pair> candidates = new ArrayList<>();
+        for (String t : targets) {
+            long size = size(after.get(t));
+            if (size > largest) {
+                continue;
+            }
+            long lo = size * MIN_SCORE / 100, hi = size * 100 / MIN_SCORE;
+            for (List<String> bucket : bySize.subMap(lo, true, hi, true).values()) {
+                for (String s : bucket) {
+                    if (compared >= MAX_PAIRS) {
+                        break;
+                    }
+                    compared += 1;
+                    int score = similarity(before.get(s), after.get(t));
+                    if (score >= MIN_SCORE) {
+                        candidates.add(new Pair(s, t, score, copy));
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingInt((Pair p) -> -p.score));
+        for (Pair p : candidates) {
+            if (targets.contains(p.target) && (copy || sources.contains(p.source))) {
+                result.add(p);
+                targets.remove(p.target);
+                if (!copy) {
+                    sources.remove(p.source);
+                }
+            }
+        }
+    }
+
+    /** Returns the similarity in percent of blobs A and B: the bytes of
+     *  the lines they share over the size of the larger. */
+    private int similarity(String a, String b) {
+        HashMap<Integer, Integer> fa = fingerprint(a), fb = fingerprint(b);
+        if (fa.size() > fb.size()) {
+            HashMap<Integer, Integer> t = fa;
+            fa = fb;
+            fb = t;
+        }
+        long common = 0;
+        for (Map.Entry<Integer, Integer> e : fa.entrySet()) {
+            Integer other = fb.get(e.getKey());
+            if (other != null) {
+                common += Math.min(e.getValue(), other);
+            }
+        }
+        long larger = Math.max(size(a), size(b));
+        return larger == 0 ? 100 : (int) Math.min(100, common * 100 / larger);
+    }
+
+    /** Returns the bytes of BLOB per distinct line hash. */
+    private HashMap<Integer, Integer> fingerprint(String blob) {
+        HashMap<Integer, Integer> result = fingerprints.get(blob);
+        if (result == null) {
+            result = new HashMap<>();
+            for (String line : Diff.lines(contents.apply(blob))) {
+                result.merge(line.hashCode(), line.length() + 1, Integer::sum);
+            }
+            fingerprints.put(blob, result);
+        }
+        return result;
+    }
+
+    private long size(String blob) {
+        return sizes.applyAsLong(blob);
+    }
+}
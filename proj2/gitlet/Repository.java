@@ -1,7 +1,11 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -18,6 +22,11 @@ import static gitlet.Utils.*;
  * @author Tsrigo
  */
 public class Repository implements Serializable {
+    /**
+     * The serial version of repositories written before any field was added,
+     * kept so that they can still be read.
+     */
+    private static final long serialVersionUID = -1321764101256353627L;
     /**
      * The length of common SHA-1.
      */
@@ -38,14 +47,32 @@ public class Repository implements Serializable {
      * The staging area.
      */
     public static final File STAGING_DIR = join(GITLET_DIR, ".staging");
+    /**
+     * Blobs that belong to no commit directory, such as stashed versions,
+     * each stored once under its SHA-1.
+     */
+    public static final File OBJECTS_DIR = join(GITLET_DIR, "objects");
+    /**
+     * The graft points of a shallow repository: retained commits some of
+     * whose parents were dropped, one SHA-1 per line. They only mark where
+     * the history was cut; the parents still present are followed as usual.
+     */
+    public static final File SHALLOW_FILE = join(GITLET_DIR, "shallow");
     /**
      * Current branch of commit tree.
      */
     private String currentBranch;
     /**
      * Each branch is a pointer to a commit, each commit has parent.
+     * The pointers live in .gitlet/refs and are read when first needed.
      */
-    private HashMap<String, Commit> branches;
+    private transient Refs refs;
+    /**
+     * The branches of a repository written before they moved to .gitlet/refs,
+     * or null. They are read from the old field "branches" and moved into
+     * refs when refs are first read; no branch is ever written into .repo.
+     */
+    private transient HashMap<String, Commit> legacyBranches;
     /**
      * The files in staging area.
      */
@@ -58,6 +85,10 @@ public class Repository implements Serializable {
      * Treat sha-1 as a reference.
      */
     private HashMap<String, File> sha2file;
+    /**
+     * Blobs stored as chunk store pointers rather than whole, by SHA-1.
+     */
+    private HashSet<String> largeBlobs;
     /**
      * SHA-1 to commits
      */
@@ -70,22 +101,34 @@ public class Repository implements Serializable {
      * Set used to record what files have been staged for removal.
      */
     private HashSet<String> removingArea;
+    /**
+     * The stash stack, newest entry first.
+     */
+    private LinkedList<Stash> stashes;
+    /**
+     * The sparse checkout patterns, read from .gitlet when first needed.
+     */
+    private transient SparseCheckout sparse;
+    /**
+     * The graft points, read from SHALLOW_FILE when first needed.
+     */
+    private transient Set<String> grafts;
 
 
     public Repository() {
         //LinkedList<Commit> commits = new LinkedList<>();
         Commit initialCommit = new Commit("initial commit", "Wed Dec 31 16:00:00 1969 -0800");
 
-        branches = new HashMap<>();
-        branches.put("master", initialCommit);
         currentBranch = "master";
         stagingArea = new HashSet<>();
         sha2file = new HashMap<>();
+        largeBlobs = new HashSet<>();
         sha2commit = new HashMap<>();
         trackingArea = new HashMap<>();
         removingArea = new HashSet<>();
+        stashes = new LinkedList<>();
 
-        commit2sha(initialCommit);
+        refs().update(currentBranch, commit2sha(initialCommit), "commit (initial): initial commit");
         //commits.addFirst(initialCommit);
     }
 
@@ -102,7 +145,15 @@ public class Repository implements Serializable {
     }
 
     private Commit getCurrentCommit() {
-        return branches.get(currentBranch);
+        return getBranchCommit(currentBranch);
+    }
+
+    /**
+     * Returns the commit BRANCHNAME points to, or null if there is no such branch.
+     */
+    private Commit getBranchCommit(String branchName) {
+        String sha = refs().get(branchName);
+        return sha == null ? null : sha2commit.get(sha);
     }
 
     public void add(String filename) {
@@ -113,8 +164,9 @@ public class Repository implements Serializable {
             System.out.println("File does not exist.");
             System.exit(0);
         }
-        byte[] contents = readContents(augend);
-        String fileSha = sha1((Object) contents);
+        HashMap<String, String> watched = Watcher.snapshot();
+        String fileSha = (watched != null && watched.containsKey(filename))
+                ? watched.get(filename) : sha1(augend);
         String trackedSha = trackingArea.get(filename);
         String existSha = getCurrentCommit().getFilesha(filename);
         if (removingArea.contains(filename)) {
@@ -132,7 +184,7 @@ public class Repository implements Serializable {
         }
         stagingArea.add(stagingFile);
         trackingArea.put(filename, fileSha);
-        writeContents(stagingFile, (Object) contents);
+        storeFile(augend, fileSha, stagingFile);
         //System.out.println("The files you have staged are: " + stagingArea.toString());
     }
 
@@ -145,16 +197,16 @@ public class Repository implements Serializable {
         }
         removingArea.clear();
         for (File X : stagingArea) {
-            String S = sha1((Object) readContents(X));
-            newCommit.addFile(X.getName(), S);
+            newCommit.addFile(X.getName(), trackingArea.get(X.getName()));
         }
         // Add a commit to the commit tree.
         newCommit.setFirstParent(commit2sha(getCurrentCommit()));
         if (givenBranch != null) {
-            newCommit.setSecondParent(commit2sha(branches.get(givenBranch)));
+            newCommit.setSecondParent(refs().get(givenBranch));
         }
-        branches.put(currentBranch, newCommit);
         String commitSha = commit2sha(newCommit);
+        refs().update(currentBranch, commitSha,
+                (givenBranch == null ? "commit: " : "commit (merge): ") + message);
         //System.out.println("DEBUG: The new commit sha is "+commitSha);
         //System.out.println("DEBUG: New currentCommit is: " + newCommit + '\n');
 
@@ -163,12 +215,12 @@ public class Repository implements Serializable {
         HashSet<File> tep = new HashSet<>(stagingArea);
         for (File X : tep) {
             File file = join(D, X.getName());
-            byte[] contents = readContents(X);
-            String S = sha1((Object) contents);
-            writeContents(file, (Object) contents);
-            sha2file.put(S, file);
+            if (!X.renameTo(file)) {
+                copyContents(X, file);
+                X.delete();
+            }
+            sha2file.put(trackingArea.get(X.getName()), file);
             removeStage(X);
-            X.delete();
         }
     }
 
@@ -192,7 +244,7 @@ public class Repository implements Serializable {
 
     public void log() {
         //QUESTION: log may not start from the very first of the current branch.
-        Commit tep = branches.get(currentBranch);
+        Commit tep = getCurrentCommit();
         while (tep != null) {
             System.out.println(tep);
             tep = sha2commit.get(tep.getFirstParent());
@@ -221,7 +273,7 @@ public class Repository implements Serializable {
 
     public void status() {
         System.out.println("=== Branches ===");
-        for (String x : new TreeSet<>(branches.keySet())) {
+        for (String x : refs().names()) {
             if (x.equals(currentBranch)) {
                 System.out.print('*');
             }
@@ -246,7 +298,10 @@ public class Repository implements Serializable {
 
         System.out.println("\n=== Modifications Not Staged For Commit ===");
         TreeSet<String> allFiles = new TreeSet<>();
-        TreeSet<String> cwdFiles = new TreeSet<>(Objects.requireNonNull(plainFilenamesIn(CWD)));
+        // With a watcher running, only files changed since the last command are read.
+        HashMap<String, String> watched = Watcher.snapshot();
+        TreeSet<String> cwdFiles = new TreeSet<>(watched != null
+                ? watched.keySet() : Objects.requireNonNull(plainFilenamesIn(CWD)));
         allFiles.addAll(cwdFiles);
         allFiles.addAll(trackingArea.keySet());
         for (File f : stagingArea) {
@@ -254,6 +309,9 @@ public class Repository implements Serializable {
         }
 
         for (String f : allFiles) {
+            if (!sparse().includes(f)) {
+                continue;
+            }
             File stagingFile = join(STAGING_DIR, f);
             File cwdFile = join(CWD, f);
             // trackingSha refers to the f that was tracked in the last commit(current commit)
@@ -269,7 +327,7 @@ public class Repository implements Serializable {
                 // if there is a modified file that is not staged, it will be marked modified.
                 // if there is a file that is staged but not same with the tracked version,
                 // it will be marked modified.
-                String cwdSha = sha1((Object) readContents(cwdFile));
+                String cwdSha = (watched != null) ? watched.get(f) : sha1(cwdFile);
                 if (isTracking && !isStaging && !cwdSha.equals(trackingSha)
                         || isStaging && !cwdSha.equals(stagingSha)) {
                     System.out.println(f + "(modified)");
@@ -316,16 +374,16 @@ public class Repository implements Serializable {
         }
         checkUntrack(filename, commitId);
         File cwdFile = join(CWD, filename); // 安全措施要做牢！
-        String cwdSha = cwdFile.exists() ? sha1((Object) readContents(cwdFile)) : null;
+        String cwdSha = cwdFile.exists() ? sha1(cwdFile) : null;
         if (!sourceSha.equals(cwdSha)) {
-            writeContents(cwdFile, (Object) readContents(sourceFile));
+            writeBlob(sourceSha, cwdFile);
         }
         removeStage(join(STAGING_DIR, filename));
         trackingArea.put(filename, sourceSha);
     }
 
     public void checkoutBranch(String branchName) {
-        if (!branches.containsKey(branchName)) {
+        if (!refs().contains(branchName)) {
             System.out.println("No such branch exists.");
             System.exit(0);
         }
@@ -333,8 +391,17 @@ public class Repository implements Serializable {
             System.out.println("No need to checkout the current branch.");
             System.exit(0);
         }
-        Commit checkoutCommit = branches.get(branchName);
-        Commit currentCommit = getCurrentCommit();
+        checkoutCommit(getBranchCommit(branchName));
+        currentBranch = branchName;
+    }
+
+    /**
+     * Replaces the working directory and tracked files with the snapshot of
+     * CHECKOUTCOMMIT and clears the staging area. Branches are left alone.
+     * Files outside the sparse checkout are tracked at CHECKOUTCOMMIT's
+     * version and removed from the working directory.
+     */
+    private void checkoutCommit(Commit checkoutCommit) {
         //System.out.println("checkoutCommit is: " + checkoutCommit + '\n');
         //System.out.println("currentCommit is " + currentCommit+ '\n');
         Set<String> checkoutFiles = checkoutCommit.getFiles();
@@ -342,10 +409,19 @@ public class Repository implements Serializable {
         //System.out.println("checkout files: " + checkoutFiles.toString()+ '\n');
         //System.out.println("current files: " + currentFiles.toString()+ '\n'    );
         for (String f : checkoutFiles) {
-            checkUntrack(f, commit2sha(checkoutCommit));
+            if (sparse().includes(f)) {
+                checkUntrack(f, commit2sha(checkoutCommit));
+            }
         }
         for (String f : checkoutFiles) {
-            checkoutFile(commit2sha(checkoutCommit), f);
+            if (sparse().includes(f)) {
+                checkoutFile(commit2sha(checkoutCommit), f);
+            } else {
+                // A copy left outside the sparse checkout would differ from what is tracked.
+                join(CWD, f).delete();
+                removeStage(join(STAGING_DIR, f));
+                trackingArea.put(f, checkoutCommit.getFilesha(f));
+            }
         }
         for (String f : currentFiles) {
             if (!checkoutFiles.contains(f)) {
@@ -355,27 +431,25 @@ public class Repository implements Serializable {
                 trackingArea.remove(f);
             }
         }
-        currentBranch = branchName;
         clearStagingArea();
     }
 
     public void branch(String branchName) {
-        if (branches.containsKey(branchName)) {
+        if (refs().contains(branchName)) {
             System.out.println("A branch with that name already exists.");
             System.exit(0);
         }
-        Commit newBranch = branches.get(currentBranch);
-        branches.put(branchName, newBranch);
+        refs().update(branchName, refs().get(currentBranch), "branch: Created from " + currentBranch);
     }
 
     public void removeBranch(String branchName) {
-        if (!branches.containsKey(branchName)) {
-            System.out.println("A branch with that name does not exist.");
+        if (!refs().contains(branchName)) {
+            printError("A branch with that name does not exist.");
         }
         if (branchName.equals(currentBranch)) {
-            System.out.println("Cannot remove the current branch.");
+            printError("Cannot remove the current branch.");
         }
-        branches.remove(branchName);
+        refs().delete(branchName);
     }
 
     public void reset(String id) {
@@ -384,22 +458,254 @@ public class Repository implements Serializable {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        String backup = currentBranch;
-        branches.put("tepBranch", previousCommit);
-        checkoutBranch("tepBranch");
-        currentBranch = backup;
-        removeBranch("tepBranch");
-        branches.put(currentBranch, previousCommit);
+        checkoutCommit(previousCommit);
+        refs().update(currentBranch, id, "reset: moving to " + id);
+    }
+
+    /**
+     * Prints the reflog of BRANCHNAME, or of the current branch if it is
+     * null, newest move first. Any head listed can be restored with reset.
+     */
+    public void reflog(String branchName) {
+        String branch = (branchName == null) ? currentBranch : branchName;
+        List<String[]> entries = refs().reflog(branch);
+        if (entries.isEmpty() && !refs().contains(branch)) {
+            printError("A branch with that name does not exist.");
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            String[] e = entries.get(i);
+            System.out.println(e[1] + " " + branch + "@{" + i + "}: " + e[3]);
+        }
+    }
+
+    /**
+     * Prints each line of FILENAME as of the current commit, prefixed with
+     * the commit that last changed it. Walks first-parent history, skipping
+     * every commit whose blob of the file equals its parent's, and diffs
+     * only the versions where the blob changes.
+     *
+     * @param filename The file to annotate.
+     */
+    public void blame(String filename) {
+        Commit commit = getCurrentCommit();
+        String blob = commit.getFilesha(filename);
+        if (blob == null) {
+            printError("File does not exist in that commit.");
+        }
+        String[] lines = Diff.lines(blobContents(blob));
+        Commit[] owners = new Commit[lines.length];
+        // pos[i] is the index of line i in the version being examined, or -1 once owned.
+        int[] pos = new int[lines.length];
+        for (int i = 0; i < pos.length; i++) {
+            pos[i] = i;
+        }
+        int remaining = lines.length;
+        String[] version = lines;
+        while (remaining > 0) {
+            Commit parent = sha2commit.get(commit.getFirstParent());
+            String parentBlob = (parent == null) ? null : parent.getFilesha(filename);
+            if (blob.equals(parentBlob)) {
+                commit = parent;
+                continue;
+            }
+            String[] parentVersion = (parentBlob == null)
+                    ? new String[0]
+                    : Diff.lines(blobContents(parentBlob));
+            int[] toParent = Diff.match(parentVersion, version);
+            for (int i = 0; i < pos.length; i++) {
+                if (pos[i] < 0) {
+                    continue;
+                }
+                pos[i] = toParent[pos[i]];
+                if (pos[i] < 0) {
+                    owners[i] = commit;
+                    remaining -= 1;
+                }
+            }
+            commit = parent;
+            blob = parentBlob;
+            version = parentVersion;
+        }
+        int width = String.valueOf(lines.length).length();
+        for (int i = 0; i < lines.length; i++) {
+            System.out.printf("%s (%s %" + width + "d) %s%n",
+                    commit2sha(owners[i]).substring(0, 8), owners[i].getTimestamp(), i + 1, lines[i]);
+        }
+    }
+
+    /**
+     * Finds the first bad commit on the first-parent chain from BADID back
+     * to GOODID by binary search, running COMMAND in the working directory
+     * at each probe. As with git bisect run, exit status 0 means good, 125
+     * means the commit cannot be tested, and 1 to 127 mean bad. Moving from
+     * one probe to the next rewrites only the files whose blobs differ, and
+     * the head commit is restored at the end. COMMAND must not run
+     * commands that modify this repository.
+     *
+     * @param badId   A commit known to be bad.
+     * @param goodId  An ancestor of BADID known to be good.
+     * @param command The test, run by the shell.
+     */
+    public void bisect(String badId, String goodId, String command) {
+        Commit bad = sha2commit.get(badId.length() < SHALENGTH ? findId(badId) : badId);
+        Commit good = sha2commit.get(goodId.length() < SHALENGTH ? findId(goodId) : goodId);
+        if (bad == null || good == null) {
+            printError("No commit with that id exists.");
+        }
+        if (!stagingArea.isEmpty() || !removingArea.isEmpty() || hasUnstagedChanges()) {
+            printError("You have uncommitted changes.");
+        }
+        List<Commit> chain = new ArrayList<>();
+        for (Commit c = bad; c != good; c = sha2commit.get(c.getFirstParent())) {
+            if (c == null) {
+                printError("The good commit is not an ancestor of the bad commit.");
+            }
+            chain.add(c);
+        }
+        if (chain.isEmpty()) {
+            printError("The good commit is not an ancestor of the bad commit.");
+        }
+
+        Commit head = getCurrentCommit();
+        Commit shown = head;
+        int firstBad = 0, lastGood = chain.size();
+        boolean[] skipped = new boolean[chain.size()];
+        for (int probe = nextProbe(firstBad, lastGood, skipped); probe >= 0;
+             probe = nextProbe(firstBad, lastGood, skipped)) {
+            Commit c = chain.get(probe);
+            switchFiles(shown, c, head);
+            shown = c;
+            int status = runTest(command, head, shown);
+            String verdict;
+            if (status == 0) {
+                lastGood = probe;
+                verdict = "good";
+            } else if (status == BISECT_SKIP) {
+                skipped[probe] = true;
+                verdict = "skip";
+            } else if (status < BISECT_ABORT) {
+                firstBad = probe;
+                verdict = "bad";
+            } else {
+                switchFiles(shown, head, head);
+                printError("bisect run failed: exit code " + status + " from '" + command + "'.");
+                return;
+            }
+            System.out.println("Bisecting: " + commit2sha(c) + " is " + verdict);
+        }
+        switchFiles(shown, head, head);
+
+        List<Commit> suspects = new ArrayList<>();
+        for (int i = lastGood - 1; i > firstBad; i--) {
+            suspects.add(chain.get(i));
+        }
+        if (suspects.isEmpty()) {
+            System.out.println(commit2sha(chain.get(firstBad)) + " is the first bad commit");
+            System.out.print(chain.get(firstBad));
+        } else {
+            System.out.println("There are only 'skip'ped commits left to test.");
+            System.out.println("The first bad commit could be any of:");
+            suspects.add(chain.get(firstBad));
+            for (Commit c : suspects) {
+                System.out.println(commit2sha(c));
+            }
+        }
+    }
+
+    /**
+     * Manages the stash stack. With no action, records the staged and
+     * unstaged changes to tracked files as a new stash entry and returns the
+     * working directory and staging area to the current commit. "pop"
+     * reapplies the newest entry and drops it; "list" prints the entries.
+     *
+     * @param action Null, pop or list.
+     */
+    public void stash(String action) {
+        if (action == null) {
+            stashPush();
+        } else if (action.equals("pop")) {
+            stashPop();
+        } else if (action.equals("list")) {
+            for (int i = 0; i < stashes.size(); i++) {
+                System.out.println("stash@{" + i + "}: " + stashes.get(i));
+            }
+        } else {
+            printError("Incorrect operands.");
+        }
+    }
+
+    /**
+     * Prints one line per file that differs between the commit TARGET, a
+     * branch name or commit id, and the current commit: A, D or M for added,
+     * deleted or modified files, and R or C with a similarity score for
+     * files renamed or copied from another. With no TARGET, compares the
+     * current commit with its first parent.
+     *
+     * @param target A branch name, commit id or null.
+     */
+    public void diff(String target) {
+        Commit head = getCurrentCommit();
+        Commit base;
+        if (target == null) {
+            base = sha2commit.get(head.getFirstParent());
+        } else if (refs().contains(target)) {
+            base = getBranchCommit(target);
+        } else {
+            base = sha2commit.get(target.length() < SHALENGTH ? findId(target) : target);
+            if (base == null) {
+                printError("No commit with that id exists.");
+            }
+        }
+        HashMap<String, String> before = (base == null) ? new HashMap<>() : snapshot(base);
+        HashMap<String, String> after = snapshot(head);
+
+        TreeMap<String, String> lines = new TreeMap<>();
+        Set<String> renamedFrom = new HashSet<>();
+        for (Renames.Pair p : new Renames(this::blobContents, this::blobSize).detect(before, after, true)) {
+            lines.put(p.target, String.format("%c%03d\t%s\t%s",
+                    p.copy ? 'C' : 'R', p.score, p.source, p.target));
+            if (!p.copy) {
+                renamedFrom.add(p.source);
+            }
+        }
+        for (String f : before.keySet()) {
+            if (!after.containsKey(f) && !renamedFrom.contains(f)) {
+                lines.put(f, "D\t" + f);
+            }
+        }
+        for (String f : after.keySet()) {
+            if (lines.containsKey(f)) {
+                continue;
+            }
+            if (!before.containsKey(f)) {
+                lines.put(f, "A\t" + f);
+            } else if (!before.get(f).equals(after.get(f))) {
+                lines.put(f, "M\t" + f);
+            }
+        }
+        for (String line : lines.values()) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Moves all loose branch refs into .gitlet/packed-refs.
+     */
+    public void packRefs() {
+        refs().pack();
     }
 
     public void merge(String givenBranch) {
-        Commit givenCommit = branches.get(givenBranch);
+        Commit givenCommit = getBranchCommit(givenBranch);
         Commit headCommit = getCurrentCommit();
         if (givenCommit == null) {
             System.out.println("A branch with that name does not exist.");
             System.exit(0);
         }
         Commit splitCommit = getSplitCommit(givenCommit, headCommit);
+        if (splitCommit == null) {
+            printError("No common ancestor within the shallow history.");
+        }
         String givenSha = commit2sha(givenCommit);
         String headSha = commit2sha(headCommit);
         String splitSha = commit2sha(splitCommit);
@@ -420,81 +726,665 @@ public class Repository implements Serializable {
             System.out.println("You have uncommitted changes.");
             System.exit(0);
         }
-        Set<String> givenFiles = givenCommit.getFiles();
-        for (String f : givenFiles) {
-            checkUntrack(f, givenSha);
+        for (String f : givenCommit.getFiles()) {
+            if (sparse().includes(f)) {
+                checkUntrack(f, givenSha);
+            }
         }
+        // Line up files renamed on one side so that they merge under their new name.
+        HashMap<String, String> splitFiles = snapshot(splitCommit);
+        HashMap<String, String> headFiles = snapshot(headCommit);
+        HashMap<String, String> givenFiles = snapshot(givenCommit);
+        Set<String> moved = alignRenames(splitFiles, headFiles, givenFiles);
         Set<String> allFiles = new HashSet<>();
-        allFiles.addAll(headCommit.getFiles());
-        allFiles.addAll(givenFiles);
-        allFiles.addAll(splitCommit.getFiles());
+        allFiles.addAll(headFiles.keySet());
+        allFiles.addAll(givenFiles.keySet());
+        allFiles.addAll(splitFiles.keySet());
         for (String f : allFiles) {
-            String splitfilesha = splitCommit.getFilesha(f);
-            String headfilesha = headCommit.getFilesha(f);
-            String givenfilesha = givenCommit.getFilesha(f);
+            String splitfilesha = splitFiles.get(f);
+            String headfilesha = headFiles.get(f);
+            String givenfilesha = givenFiles.get(f);
             if (splitfilesha != null) {
                 if (givenfilesha == null) {
                     if (headfilesha == null || splitfilesha.equals(headfilesha)) {
                         removeTrack(f);
                         continue;
                     }
-                    sloveConflict(headSha, givenSha, f);
+                    sloveConflict(headfilesha, null, f);
                     add(f);
                 } else if (headfilesha == null) {
                     if (splitfilesha.equals(givenfilesha)) {
                         removeTrack(f);
                         continue;
                     }
-                    sloveConflict(headSha, givenSha, f);
+                    sloveConflict(null, givenfilesha, f);
                     add(f);
                 } else {
                     boolean headModified = !splitfilesha.equals(headfilesha);
                     boolean givenModified = !splitfilesha.equals(givenfilesha);
                     if (!headModified && givenModified) {
-                        checkoutFile(givenSha, f);
-                        add(f);
+                        takeVersion(givenfilesha, f);
                     } else if (headModified && givenModified && !headfilesha.equals(givenfilesha)) {
-                        sloveConflict(headSha, givenSha, f);
+                        sloveConflict(headfilesha, givenfilesha, f);
                         add(f);
+                    } else if (moved.contains(f)) {
+                        takeVersion(headfilesha, f);
                     }
                 }
             } else {
                 if (headfilesha == null) { // givenSha 不会为null，因为allfiles包含的是这三者的文件。
-                    checkoutFile(givenSha, f);
+                    takeVersion(givenfilesha, f);
                 } else if (givenfilesha == null) {
-                    checkoutFile(headSha, f);
+                    takeVersion(headfilesha, f);
                 } else if (!headfilesha.equals(givenfilesha)) {
-                    sloveConflict(headSha, givenSha, f);
+                    sloveConflict(headfilesha, givenfilesha, f);
+                    add(f);
+                } else if (sparse().includes(f) && !moved.contains(f)) {
+                    add(f);
+                } else {
+                    takeVersion(headfilesha, f);
                 }
-                add(f);
             }
         }
         commit("Merged " + givenBranch + " into " + currentBranch + ".", givenBranch);
     }
 
+    /**
+     * Manages the sparse checkout patterns.
+     * "add PATTERN" narrows the working directory to the files matching any
+     * pattern added so far, "disable" checks the whole tree out again and
+     * "list" prints the patterns.
+     *
+     * @param action  One of add, list or disable.
+     * @param pattern The glob to add, or null.
+     */
+    public void sparseCheckout(String action, String pattern) {
+        SparseCheckout patterns = sparse();
+        switch (action) {
+            case "list" -> {
+                for (String p : patterns.patterns()) {
+                    System.out.println(p);
+                }
+                return;
+            }
+            case "add" -> {
+                if (pattern == null) {
+                    printError("Incorrect operands.");
+                }
+                try {
+                    patterns.add(pattern);
+                } catch (IllegalArgumentException excp) {
+                    printError("Invalid sparse checkout pattern.");
+                }
+            }
+            case "disable" -> patterns.clear();
+            default -> printError("Incorrect operands.");
+        }
+        patterns.save();
+        applySparse();
+    }
+
     // Bellowed are some helper functions.
-    private void sloveConflict(String currentSha, String givenSha, String filename) {
-        System.out.println("Encountered a merge conflict.");
-        String currentFileSha = sha2commit.get(currentSha).getFilesha(filename);
-        File currentFile = sha2file.get(currentFileSha);
-        String givenFileSha = sha2commit.get(givenSha).getFilesha(filename);
-        File givenFile = sha2file.get(givenFileSha);
-
-        byte[] currentContent, givenContent;
-        if (currentFile == null || !currentFile.exists()) {
-            currentContent = "".getBytes();
+    private void stashPush() {
+        Commit head = getCurrentCommit();
+        Stash entry = new Stash(currentBranch, commit2sha(head), head.getMessage());
+        for (File stagingFile : stagingArea) {
+            String f = stagingFile.getName();
+            String stagedSha = trackingArea.get(f);
+            storeBlob(stagedSha, stagingFile, true);
+            entry.getStaged().put(f, stagedSha);
+        }
+        entry.getRemoved().addAll(removingArea);
+        Set<String> tracked = new HashSet<>(trackingArea.keySet());
+        tracked.addAll(head.getFiles());
+        for (String f : tracked) {
+            if (!sparse().includes(f) || removingArea.contains(f)) {
+                continue;
+            }
+            File cwdFile = join(CWD, f);
+            String indexSha = trackingArea.get(f);
+            if (!cwdFile.exists()) {
+                entry.getWorktree().put(f, null);
+                continue;
+            }
+            String cwdSha = sha1(cwdFile);
+            if (!cwdSha.equals(indexSha)) {
+                storeBlob(cwdSha, cwdFile, false);
+                entry.getWorktree().put(f, cwdSha);
+            }
+        }
+        if (entry.isEmpty()) {
+            printError("No local changes to save.");
+        }
+
+        Set<String> touched = new HashSet<>(entry.getStaged().keySet());
+        touched.addAll(entry.getRemoved());
+        touched.addAll(entry.getWorktree().keySet());
+        for (String f : touched) {
+            String headSha = head.getFilesha(f);
+            String cwdSha = entry.getWorktree().containsKey(f)
+                    ? entry.getWorktree().get(f) : entry.getStaged().get(f);
+            File cwdFile = join(CWD, f);
+            if (headSha == null) {
+                cwdFile.delete();
+                trackingArea.remove(f);
+            } else {
+                if (!headSha.equals(cwdSha) && sparse().includes(f)) {
+                    writeBlob(headSha, cwdFile);
+                }
+                trackingArea.put(f, headSha);
+            }
+        }
+        for (File stagingFile : stagingArea) {
+            stagingFile.delete();
+        }
+        clearStagingArea();
+        removingArea.clear();
+        stashes.addFirst(entry);
+    }
+
+    private void stashPop() {
+        if (stashes.isEmpty()) {
+            printError("No stash entries found.");
+        }
+        if (!stagingArea.isEmpty() || !removingArea.isEmpty() || hasUnstagedChanges()) {
+            printError("You have uncommitted changes.");
+        }
+        Stash entry = stashes.getFirst();
+        Commit head = getCurrentCommit();
+        for (String f : entry.getStaged().keySet()) {
+            File cwdFile = join(CWD, f);
+            if (cwdFile.exists() && !trackingArea.containsKey(f)) {
+                printError("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+        }
+        for (Map.Entry<String, String> e : entry.getStaged().entrySet()) {
+            String f = e.getKey();
+            File stagingFile = join(STAGING_DIR, f);
+            copyContents(sha2file.get(e.getValue()), stagingFile);
+            stagingArea.add(stagingFile);
+            trackingArea.put(f, e.getValue());
+            if (!entry.getWorktree().containsKey(f) && !e.getValue().equals(head.getFilesha(f))) {
+                writeBlob(e.getValue(), join(CWD, f));
+            }
+        }
+        for (String f : entry.getRemoved()) {
+            removingArea.add(f);
+            trackingArea.remove(f);
+            join(CWD, f).delete();
+        }
+        for (Map.Entry<String, String> e : entry.getWorktree().entrySet()) {
+            File cwdFile = join(CWD, e.getKey());
+            if (e.getValue() == null) {
+                cwdFile.delete();
+            } else if (!e.getValue().equals(head.getFilesha(e.getKey())) || !cwdFile.exists()) {
+                writeBlob(e.getValue(), cwdFile);
+            }
+        }
+        stashes.removeFirst();
+    }
+
+    /**
+     * Makes sure the object store holds the blob BLOBSHA, copying it from
+     * SOURCE only if no copy is known yet. SOURCE is either STAGED, and so
+     * already stored the way the blob is, or a working file.
+     */
+    private void storeBlob(String blobSha, File source, boolean staged) {
+        File known = sha2file.get(blobSha);
+        if (known != null && known.exists()) {
+            return;
+        }
+        OBJECTS_DIR.mkdir();
+        File blob = join(OBJECTS_DIR, blobSha);
+        if (staged) {
+            copyContents(source, blob);
+        } else {
+            storeFile(source, blobSha, blob);
+        }
+        sha2file.put(blobSha, blob);
+    }
+
+    /**
+     * Stores the working file SOURCE, whose SHA-1 is BLOBSHA, as DEST: as a
+     * chunk store pointer if it is large, or a blob already stored that way,
+     * and as a plain copy otherwise.
+     */
+    private void storeFile(File source, String blobSha, File dest) {
+        if (largeBlobs.contains(blobSha)
+                || !sha2file.containsKey(blobSha) && ChunkStore.isLarge(source)) {
+            ChunkStore.store(source, dest);
+            largeBlobs.add(blobSha);
         } else {
-            currentContent = readContents(currentFile);
+            copyContents(source, dest);
+        }
+    }
+
+    /**
+     * Returns the contents of the blob BLOBSHA.
+     */
+    private byte[] blobContents(String blobSha) {
+        File blob = sha2file.get(blobSha);
+        return largeBlobs.contains(blobSha) ? ChunkStore.read(blob) : readContents(blob);
+    }
+
+    /**
+     * Returns the size in bytes of the blob BLOBSHA.
+     */
+    private long blobSize(String blobSha) {
+        File blob = sha2file.get(blobSha);
+        return largeBlobs.contains(blobSha) ? ChunkStore.size(blob) : blob.length();
+    }
+
+    /**
+     * Writes the blob BLOBSHA to the working file DEST.
+     */
+    private void writeBlob(String blobSha, File dest) {
+        try (FileChannel out = writeChannel(dest)) {
+            transferBlob(blobSha, out);
+        } catch (IOException excp) {
+            throw error("Cannot write %s: %s", dest.getName(), excp.getMessage());
         }
-        if (givenFile == null || !givenFile.exists()) {
-            givenContent = "".getBytes();
+    }
+
+    /**
+     * Appends the blob BLOBSHA to OUT. The bytes go from file channel to
+     * file channel, chunk by chunk for large blobs, and are never copied
+     * through the heap.
+     */
+    private void transferBlob(String blobSha, FileChannel out) {
+        File blob = sha2file.get(blobSha);
+        if (largeBlobs.contains(blobSha)) {
+            ChunkStore.transfer(blob, out);
         } else {
-            givenContent = readContents(givenFile);
+            transferContents(blob, out);
+        }
+    }
+
+    /**
+     * Truncates history to the last DEPTH commits of every branch, the head
+     * counting as the first. Retained commits some of whose parents are
+     * dropped become graft points, listed in .gitlet/shallow; log, blame,
+     * bisect and the search for a merge's split point follow their
+     * remaining parents and stop where none is left. The commit
+     * directories, blobs and chunks that only dropped commits used are
+     * deleted; blobs still in use are moved into the object store first.
+     * Reflog entries that moved a branch to a dropped commit, or deleted a
+     * branch that pointed to one, are pruned with it, since reflog can no
+     * longer recover those commits; entries for retained commits stay.
+     *
+     * @param depth The number of generations to keep, a positive number.
+     */
+    public void shallow(String depth) {
+        int n;
+        try {
+            n = Integer.parseInt(depth);
+        } catch (NumberFormatException excp) {
+            n = 0;
+        }
+        if (n < 1) {
+            printError("Depth must be a positive number.");
+        }
+        Set<String> keep = new HashSet<>();
+        for (String branch : refs().names()) {
+            Set<String> seen = new HashSet<>();
+            List<String> generation = List.of(refs().get(branch));
+            for (int d = 0; d < n && !generation.isEmpty(); d++) {
+                List<String> next = new ArrayList<>();
+                for (String sha : generation) {
+                    if (seen.add(sha)) {
+                        next.addAll(parents(sha));
+                    }
+                }
+                generation = next;
+            }
+            keep.addAll(seen);
+        }
+        Set<String> dropped = new HashSet<>(sha2commit.keySet());
+        dropped.removeAll(keep);
+        if (dropped.isEmpty()) {
+            return;
+        }
+        for (String sha : keep) {
+            for (String p : parents(sha)) {
+                if (dropped.contains(p)) {
+                    grafts().add(sha);
+                }
+            }
+        }
+        grafts().removeAll(dropped);
+        refs().prune(dropped);
+
+        Set<String> used = new HashSet<>(trackingArea.values());
+        for (String sha : keep) {
+            used.addAll(snapshot(sha2commit.get(sha)).values());
+        }
+        for (Stash s : stashes) {
+            used.addAll(s.getStaged().values());
+            used.addAll(s.getWorktree().values());
+        }
+        for (Iterator<Map.Entry<String, File>> it = sha2file.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, File> e = it.next();
+            File blob = e.getValue();
+            boolean inDropped = dropped.contains(blob.getParentFile().getName());
+            if (!used.contains(e.getKey())) {
+                if (!inDropped) {
+                    blob.delete();
+                }
+                largeBlobs.remove(e.getKey());
+                it.remove();
+            } else if (inDropped) {
+                OBJECTS_DIR.mkdir();
+                File moved = join(OBJECTS_DIR, e.getKey());
+                if (!blob.renameTo(moved)) {
+                    copyContents(blob, moved);
+                }
+                e.setValue(moved);
+            }
+        }
+        for (String sha : dropped) {
+            File dir = join(COMIT_DIR, sha);
+            List<String> files = plainFilenamesIn(dir);
+            if (files != null) {
+                for (String f : files) {
+                    join(dir, f).delete();
+                }
+            }
+            dir.delete();
+            commit2Sha.remove(sha2commit.remove(sha));
+        }
+        List<File> pointers = new ArrayList<>();
+        for (String blobSha : largeBlobs) {
+            if (sha2file.containsKey(blobSha)) {
+                pointers.add(sha2file.get(blobSha));
+            }
+        }
+        for (File stagingFile : stagingArea) {
+            if (largeBlobs.contains(trackingArea.get(stagingFile.getName()))) {
+                pointers.add(stagingFile);
+            }
+        }
+        ChunkStore.retain(pointers);
+        writeContents(SHALLOW_FILE, String.join("\n", grafts()) + "\n");
+    }
+
+    /**
+     * Exit status of a bisect test meaning the commit cannot be tested,
+     * and the lowest status that aborts the bisection.
+     */
+    private static final int BISECT_SKIP = 125, BISECT_ABORT = 128;
+
+    /**
+     * Returns the untested, unskipped index closest to the middle of the
+     * open range (FIRSTBAD, LASTGOOD), or -1 if there is none.
+     */
+    private static int nextProbe(int firstBad, int lastGood, boolean[] skipped) {
+        int mid = (firstBad + lastGood) / 2;
+        for (int d = 0; mid - d > firstBad || mid + d < lastGood; d++) {
+            if (mid - d > firstBad && !skipped[mid - d]) {
+                return mid - d;
+            }
+            if (mid + d < lastGood && mid + d > firstBad && !skipped[mid + d]) {
+                return mid + d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the bisect test COMMAND through the shell and returns its exit
+     * status. If it cannot be run, restores HEAD from SHOWN and exits.
+     */
+    private int runTest(String command, Commit head, Commit shown) {
+        boolean windows = System.getProperty("os.name").startsWith("Windows");
+        ProcessBuilder pb = windows
+                ? new ProcessBuilder("cmd", "/c", command)
+                : new ProcessBuilder("sh", "-c", command);
+        pb.directory(CWD).inheritIO();
+        try {
+            System.out.flush();
+            return pb.start().waitFor();
+        } catch (java.io.IOException | InterruptedException excp) {
+            switchFiles(shown, head, head);
+            printError("bisect run failed: " + excp.getMessage());
+            return BISECT_ABORT;
+        }
+    }
+
+    /**
+     * Turns the working directory from the snapshot of FROM into that of TO,
+     * writing only the files whose blobs differ and deleting files TO lacks.
+     * Files outside the sparse checkout are left alone. If an untracked
+     * file is in the way, the snapshot of HEAD is restored and gitlet exits.
+     */
+    private void switchFiles(Commit from, Commit to, Commit head) {
+        for (String f : to.getFiles()) {
+            String toSha = to.getFilesha(f);
+            if (!sparse().includes(f) || toSha.equals(from.getFilesha(f))) {
+                continue;
+            }
+            File cwdFile = join(CWD, f);
+            if (from.getFilesha(f) == null && cwdFile.exists() && !trackingArea.containsKey(f)) {
+                switchFiles(from, head, head);
+                printError("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            writeBlob(toSha, cwdFile);
+        }
+        for (String f : from.getFiles()) {
+            if (to.getFilesha(f) == null) {
+                join(CWD, f).delete();
+            }
+        }
+    }
+
+    /**
+     * Returns true if a tracked file in the working directory differs from
+     * the current commit's version of it.
+     */
+    private boolean hasUnstagedChanges() {
+        Commit head = getCurrentCommit();
+        for (String f : head.getFiles()) {
+            File cwdFile = join(CWD, f);
+            if (!sparse().includes(f)) {
+                continue;
+            }
+            if (!cwdFile.exists() || !head.getFilesha(f).equals(sha1(cwdFile))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Refs refs() {
+        if (refs == null) {
+            useRefs(new Refs());
         }
-        currentFile = join(CWD, filename);
-        String contents = "<<<<<<< HEAD\n" + new String(currentContent) + "=======\n"
-                + new String(givenContent) + ">>>>>>>\n";
-        writeContents(currentFile, contents);
+        return refs;
+    }
+
+    /**
+     * Reads branches from GIVEN from now on, first moving into it any
+     * branches this repository still holds from before they were stored
+     * as refs. Moved branches are written when the refs are next saved.
+     *
+     * @return True if branches were moved, so that .repo must be saved
+     *         again without them.
+     */
+    boolean useRefs(Refs given) {
+        refs = given;
+        if (legacyBranches == null) {
+            return false;
+        }
+        for (Map.Entry<String, Commit> e : legacyBranches.entrySet()) {
+            if (!refs.contains(e.getKey())) {
+                refs.update(e.getKey(), commit2sha(e.getValue()), "migrate: from .repo");
+            }
+        }
+        legacyBranches = null;
+        return true;
+    }
+
+    /**
+     * Writes the branch moves of this command. Called only once every
+     * commit they point to is in the saved repository, so that no head
+     * ever names a commit missing from it.
+     */
+    void saveRefs() {
+        if (refs != null) {
+            refs.flush();
+        }
+    }
+
+    /**
+     * Reads a repository, giving fields added since it was written their
+     * empty values and keeping the branches of one written before they
+     * moved to .gitlet/refs.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        currentBranch = (String) fields.get("currentBranch", null);
+        stagingArea = (HashSet<File>) fields.get("stagingArea", null);
+        trackingArea = (HashMap<String, String>) fields.get("trackingArea", null);
+        sha2file = (HashMap<String, File>) fields.get("sha2file", null);
+        largeBlobs = (HashSet<String>) fields.get("largeBlobs", new HashSet<>());
+        sha2commit = (HashMap<String, Commit>) fields.get("sha2commit", null);
+        commit2Sha = (HashMap<Commit, String>) fields.get("commit2Sha", null);
+        removingArea = (HashSet<String>) fields.get("removingArea", null);
+        stashes = (LinkedList<Stash>) fields.get("stashes", new LinkedList<>());
+        if (fields.getObjectStreamClass().getField("branches") != null) {
+            legacyBranches = (HashMap<String, Commit>) fields.get("branches", null);
+        }
+    }
+
+    private SparseCheckout sparse() {
+        if (sparse == null) {
+            sparse = SparseCheckout.load();
+        }
+        return sparse;
+    }
+
+    /**
+     * Brings the working directory in line with the sparse patterns:
+     * restores missing files that are now included and deletes unmodified
+     * files that are now excluded. Modified files are left alone.
+     */
+    private void applySparse() {
+        Commit head = getCurrentCommit();
+        for (String f : head.getFiles()) {
+            File cwdFile = join(CWD, f);
+            String headSha = head.getFilesha(f);
+            boolean staged = stagingArea.contains(join(STAGING_DIR, f));
+            if (staged || removingArea.contains(f)) {
+                continue;
+            }
+            if (sparse().includes(f)) {
+                if (!cwdFile.exists()) {
+                    writeBlob(headSha, cwdFile);
+                }
+            } else if (cwdFile.exists() && headSha.equals(sha1(cwdFile))) {
+                cwdFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Makes the blob FILESHA the merge result for FILENAME.
+     * Inside the sparse checkout the file is written and added as usual;
+     * outside it the blob is staged straight from the object store without
+     * touching the working directory.
+     */
+    private void takeVersion(String fileSha, String filename) {
+        if (sparse().includes(filename)) {
+            File cwdFile = join(CWD, filename);
+            if (!cwdFile.exists() || !fileSha.equals(sha1(cwdFile))) {
+                writeBlob(fileSha, cwdFile);
+            }
+            add(filename);
+            return;
+        }
+        File stagingFile = join(STAGING_DIR, filename);
+        removingArea.remove(filename);
+        trackingArea.put(filename, fileSha);
+        if (fileSha.equals(getCurrentCommit().getFilesha(filename))) {
+            removeStage(stagingFile);
+            stagingFile.delete();
+            return;
+        }
+        stagingArea.add(stagingFile);
+        copyContents(sha2file.get(fileSha), stagingFile);
+    }
+
+    /**
+     * Writes FILENAME with conflict markers around the blobs CURRENTFILESHA
+     * and GIVENFILESHA, either of which may be null for a deleted file.
+     */
+    private void sloveConflict(String currentFileSha, String givenFileSha, String filename) {
+        System.out.println("Encountered a merge conflict.");
+        File cwdFile = join(CWD, filename);
+        try (FileChannel out = writeChannel(cwdFile)) {
+            out.write(ByteBuffer.wrap("<<<<<<< HEAD\n".getBytes()));
+            if (currentFileSha != null) {
+                transferBlob(currentFileSha, out);
+            }
+            out.write(ByteBuffer.wrap("=======\n".getBytes()));
+            if (givenFileSha != null) {
+                transferBlob(givenFileSha, out);
+            }
+            out.write(ByteBuffer.wrap(">>>>>>>\n".getBytes()));
+        } catch (IOException excp) {
+            throw error("Cannot write %s: %s", filename, excp.getMessage());
+        }
+    }
+
+    private static HashMap<String, String> snapshot(Commit commit) {
+        HashMap<String, String> files = new HashMap<>();
+        for (String f : commit.getFiles()) {
+            files.put(f, commit.getFilesha(f));
+        }
+        return files;
+    }
+
+    /**
+     * Rewrites the snapshots of a merge so that a file renamed since SPLIT on
+     * only one side, or to the same name on both, appears under its new name
+     * in all three. Returns the new names of files the head side still has
+     * under their old name; those old names are removed from the working
+     * directory and tracking area.
+     */
+    private Set<String> alignRenames(HashMap<String, String> split,
+                                     HashMap<String, String> head, HashMap<String, String> given) {
+        Renames detector = new Renames(this::blobContents, this::blobSize);
+        HashMap<String, String> headRenamed = new HashMap<>();
+        for (Renames.Pair p : detector.detect(split, head, false)) {
+            headRenamed.put(p.source, p.target);
+        }
+        HashMap<String, String> givenRenamed = new HashMap<>();
+        for (Renames.Pair p : detector.detect(split, given, false)) {
+            givenRenamed.put(p.source, p.target);
+        }
+        Set<String> moved = new HashSet<>();
+        for (Map.Entry<String, String> e : givenRenamed.entrySet()) {
+            String from = e.getKey(), to = e.getValue();
+            String headTo = headRenamed.get(from);
+            if (headTo == null && head.containsKey(from) && !head.containsKey(to)) {
+                split.put(to, split.remove(from));
+                head.put(to, head.remove(from));
+                moved.add(to);
+                removeTrack(from);
+            } else if (to.equals(headTo)) {
+                split.put(to, split.remove(from));
+            }
+        }
+        for (Map.Entry<String, String> e : headRenamed.entrySet()) {
+            String from = e.getKey(), to = e.getValue();
+            if (!givenRenamed.containsKey(from) && given.containsKey(from) && !given.containsKey(to)) {
+                split.put(to, split.remove(from));
+                given.put(to, given.remove(from));
+            }
+        }
+        return moved;
     }
 
     private Commit getSplitCommit(Commit x, Commit y) {
@@ -503,40 +1393,54 @@ public class Repository implements Serializable {
         tep.add(commit2sha(x));
         while (!tep.isEmpty()) {
             String t = tep.poll();
-            xAncestor.add(t);
-            String p1 = sha2commit.get(t).getFirstParent();
-            String p2 = sha2commit.get(t).getSecondParent();
-            if (p1 != null) {
-                tep.add(p1);
-            }
-            if (p2 != null) {
-                tep.add(p2);
-            }
-            if (p1 == null && p2 == null) {
-                break;
+            if (xAncestor.add(t)) {
+                tep.addAll(parents(t));
             }
         }
-        tep.clear();
+        HashSet<String> yAncestor = new HashSet<>();
         tep.add(commit2sha(y));
         while (!tep.isEmpty()) {
             String t = tep.poll();
             if (xAncestor.contains(t)) {
                 return sha2commit.get(t);
             }
-            xAncestor.add(t);
-            String p1 = sha2commit.get(t).getFirstParent();
-            String p2 = sha2commit.get(t).getSecondParent();
-            if (p1 != null) {
-                tep.add(p1);
+            if (yAncestor.add(t)) {
+                tep.addAll(parents(t));
             }
-            if (p2 != null) {
-                tep.add(p2);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the parents of the commit COMMITSHA that are part of the
+     * history, leaving out those a shallow truncation dropped.
+     */
+    private List<String> parents(String commitSha) {
+        List<String> result = new ArrayList<>(2);
+        Commit commit = sha2commit.get(commitSha);
+        if (commit == null) {
+            return result;
+        }
+        for (String p : new String[] {commit.getFirstParent(), commit.getSecondParent()}) {
+            if (p != null && sha2commit.containsKey(p)) {
+                result.add(p);
             }
-            if (p1 == null && p2 == null) {
-                break;
+        }
+        return result;
+    }
+
+    private Set<String> grafts() {
+        if (grafts == null) {
+            grafts = new TreeSet<>();
+            if (SHALLOW_FILE.isFile()) {
+                for (String line : readContentsAsString(SHALLOW_FILE).split("\n")) {
+                    if (!line.isBlank()) {
+                        grafts.add(line.strip());
+                    }
+                }
             }
         }
-        return null;
+        return grafts;
     }
 
     /**
@@ -553,7 +1457,7 @@ public class Repository implements Serializable {
         if (commitId == null || !cwdFile.exists()) {
             return true;
         }
-        String cwdFilesha = sha1((Object) readContents(cwdFile));
+        String cwdFilesha = sha1(cwdFile);
         String checkoutFile = sha2commit.get(commitId).getFilesha(filename);
         boolean isTracking = (trackingArea.get(filename) != null);
         if (cwdFile.exists() && !isTracking && !cwdFilesha.equals(checkoutFile)) {
@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/**
+ * The sparse checkout patterns of a repository, stored one glob per line in
+ * .gitlet/sparse-checkout. When there are no patterns every file is in the
+ * checkout; otherwise only files whose names match at least one pattern
+ * are materialized in, and scanned from, the working directory. Files
+ * outside the patterns stay tracked exactly as in the current commit.
+ *
+ * @author Tsrigo
+ */
+class SparseCheckout {
+    /**
+     * The file holding the patterns.
+     */
+    static final File SPARSE_FILE = join(Repository.GITLET_DIR, "sparse-checkout");
+
+    private final List<String> patterns = new ArrayList<>();
+    private final List<PathMatcher> matchers = new ArrayList<>();
+
+    /**
+     * Reads the patterns of the current repository.
+     */
+    static SparseCheckout load() {
+        SparseCheckout sparse = new SparseCheckout();
+        if (SPARSE_FILE.isFile()) {
+            for (String line : readContentsAsString(SPARSE_FILE).split("\n")) {
+                if (!line.isBlank()) {
+                    sparse.add(line.strip());
+                }
+            }
+        }
+        return sparse;
+    }
+
+    /**
+     * Returns true if no patterns are configured.
+     */
+    boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * Returns true if FILENAME belongs in the working directory.
+     */
+    boolean includes(String filename) {
+        if (matchers.isEmpty()) {
+            return true;
+        }
+        for (PathMatcher m : matchers) {
+            if (m.matches(Paths.get(filename))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the glob PATTERN, e.g. "*.java".
+     */
+    void add(String pattern) {
+        if (!patterns.contains(pattern)) {
+            patterns.add(pattern);
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    /**
+     * Removes every pattern, so that the whole tree is checked out again.
+     */
+    void clear() {
+        patterns.clear();
+        matchers.clear();
+    }
+
+    List<String> patterns() {
+        return patterns;
+    }
+
+    /**
+     * Writes the patterns back to SPARSE_FILE, deleting it if there are none.
+     */
+    void save() {
+        if (patterns.isEmpty()) {
+            SPARSE_FILE.delete();
+            return;
+        }
+        writeContents(SPARSE_FILE, String.join("\n", patterns) + "\n");
+    }
+}
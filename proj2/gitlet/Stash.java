@@ -0,0 +1,72 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Represents one entry of the stash stack: the uncommitted state of the
+ * staging area and working directory, recorded as blob SHA-1s. The blobs
+ * themselves live in the object store, where a blob that is already known
+ * costs nothing more to stash.
+ *
+ * @author Tsrigo
+ */
+class Stash implements Serializable {
+    /**
+     * The serial version of the stashes already saved in .repo, kept so
+     * that they can still be read.
+     */
+    private static final long serialVersionUID = 6748296915206943670L;
+    /**
+     * The branch and commit the changes were made on.
+     */
+    private final String branch, baseSha;
+    /**
+     * The message of the commit the changes were made on.
+     */
+    private final String baseMessage;
+    /**
+     * Files staged for addition, with the SHA-1 of their staged version.
+     */
+    private final HashMap<String, String> staged = new HashMap<>();
+    /**
+     * Files staged for removal.
+     */
+    private final HashSet<String> removed = new HashSet<>();
+    /**
+     * Tracked files whose working copy differs from the staged or committed
+     * version, with the SHA-1 of the working copy, or null if it was deleted.
+     */
+    private final HashMap<String, String> worktree = new HashMap<>();
+
+    Stash(String branch, String baseSha, String baseMessage) {
+        this.branch = branch;
+        this.baseSha = baseSha;
+        this.baseMessage = baseMessage;
+    }
+
+    HashMap<String, String> getStaged() {
+        return staged;
+    }
+
+    HashSet<String> getRemoved() {
+        return removed;
+    }
+
+    HashMap<String, String> getWorktree() {
+        return worktree;
+    }
+
+    /**
+     * Returns true if nothing was recorded.
+     */
+    boolean isEmpty() {
+        return staged.isEmpty() && removed.isEmpty() && worktree.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "WIP on " + branch + ": " + baseSha.substring(0, 7) + " " + baseMessage;
+    }
+}
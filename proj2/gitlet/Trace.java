@@ -0,0 +1,165 @@
+package gitlet;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Opt-in instrumentation of a single gitlet command.
+ *
+ *  Setting the environment variable GITLET_TRACE makes gitlet report, on
+ *  System.err, the wall time of each phase of the command (loading
+ *  .gitlet/.repo, running the command, saving it again) together with the
+ *  bytes read and written, the files stat'ed and the objects hashed by the
+ *  utilities in Utils.  GITLET_TRACE=json produces a JSON object; any other
+ *  non-empty value except 0 produces a one-line summary.
+ *
+ *  The report is printed from a shutdown hook, so commands that end with
+ *  System.exit are reported too.  When one JVM runs several commands, as the
+ *  benchmarks do through Main.main, each begin() first reports the command
+ *  before it and starts counting from zero, and the single hook reports
+ *  the last one.
+ *
+ *  @author Tsrigo
+ */
+class Trace {
+
+    /** The requested output format, or null if tracing is off. */
+    private static final String FORMAT = format(System.getenv("GITLET_TRACE"));
+
+    /** True iff tracing is on. */
+    static final boolean ENABLED = FORMAT != null;
+
+    /** The command being traced. */
+    private static String command;
+    /** Wall time of each finished phase in nanoseconds, in order. */
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+    /** The phase in progress, and when it started. */
+    private static String phase;
+    private static long phaseStart, start;
+
+    private static long bytesRead, bytesWritten, filesStatted,
+        objectsHashed, bytesHashed;
+
+    /** True iff the shutdown hook has been registered. */
+    private static boolean hooked;
+    /** True iff a command has begun and has not been reported yet. */
+    private static boolean unreported;
+
+    /** Starts tracing COMMAND, if tracing is on. */
+    static synchronized void begin(String cmd) {
+        if (!ENABLED) {
+            return;
+        }
+        if (unreported) {
+            report();
+        }
+        PHASES.clear();
+        phase = null;
+        bytesRead = bytesWritten = filesStatted = 0;
+        objectsHashed = bytesHashed = 0;
+        command = cmd;
+        start = System.nanoTime();
+        unreported = true;
+        if (!hooked) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Trace::report));
+            hooked = true;
+        }
+    }
+
+    /** Ends the phase in progress, if any, and starts phase NAME. */
+    static void phase(String name) {
+        if (!ENABLED) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        phase = name;
+        phaseStart = now;
+    }
+
+    /** Records that N bytes were read from disk. */
+    static void read(long n) {
+        bytesRead += n;
+    }
+
+    /** Records that N bytes were written to disk. */
+    static void written(long n) {
+        bytesWritten += n;
+    }
+
+    /** Records that N files were stat'ed. */
+    static void statted(long n) {
+        filesStatted += n;
+    }
+
+    /** Records that one object of N bytes was hashed. */
+    static void hashed(long n) {
+        objectsHashed += 1;
+        bytesHashed += n;
+    }
+
+    private static void endPhase(long now) {
+        if (phase != null) {
+            PHASES.merge(phase, now - phaseStart, Long::sum);
+            phase = null;
+        }
+    }
+
+    /** Prints the report for the traced command on System.err. */
+    private static synchronized void report() {
+        if (!unreported) {
+            return;
+        }
+        unreported = false;
+        long now = System.nanoTime();
+        endPhase(now);
+        String text = FORMAT.equals("json") ? json(now - start) : line(now - start);
+        System.err.println(text);
+        System.err.flush();
+    }
+
+    private static String line(long total) {
+        StringBuilder out = new StringBuilder("gitlet-trace: ");
+        out.append(command).append(' ').append(millis(total)).append("ms [");
+        String sep = "";
+        for (Map.Entry<String, Long> e : PHASES.entrySet()) {
+            out.append(sep).append(e.getKey()).append('=')
+                .append(millis(e.getValue())).append("ms");
+            sep = " ";
+        }
+        out.append("] read=").append(bytesRead).append("B written=")
+            .append(bytesWritten).append("B stat=").append(filesStatted)
+            .append(" hashed=").append(objectsHashed).append('/')
+            .append(bytesHashed).append('B');
+        return out.toString();
+    }
+
+    private static String json(long total) {
+        StringBuilder out = new StringBuilder("{\"command\":\"");
+        out.append(command).append("\",\"totalMs\":").append(millis(total))
+            .append(",\"phasesMs\":{");
+        String sep = "";
+        for (Map.Entry<String, Long> e : PHASES.entrySet()) {
+            out.append(sep).append('"').append(e.getKey()).append("\":")
+                .append(millis(e.getValue()));
+            sep = ",";
+        }
+        out.append("},\"bytesRead\":").append(bytesRead)
+            .append(",\"bytesWritten\":").append(bytesWritten)
+            .append(",\"filesStatted\":").append(filesStatted)
+            .append(",\"objectsHashed\":").append(objectsHashed)
+            .append(",\"bytesHashed\":").append(bytesHashed).append('}');
+        return out.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String format(String value) {
+        if (value == null || value.isEmpty() || value.equals("0")) {
+            return null;
+        }
+        return value.equalsIgnoreCase("json") ? "json" : "line";
+    }
+}
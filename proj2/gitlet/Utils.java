@@ -9,8 +9,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -38,25 +42,76 @@ class Utils {
     static String sha1(Object... vals) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
+            long hashed = 0;
             for (Object val : vals) {
                 if (val instanceof byte[]) {
                     md.update((byte[]) val);
+                    hashed += ((byte[]) val).length;
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    byte[] bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+                    md.update(bytes);
+                    hashed += bytes.length;
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+            Trace.hashed(hashed);
+            return hex(md.digest());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, which is never
+     *  read whole: files of more than BUFFER_SIZE bytes are digested
+     *  straight from memory-mapped regions of at most MAP_SIZE bytes, and
+     *  smaller ones through a buffer.  FILE must be a normal file. */
+    static String sha1(File file) {
+        Trace.statted(1);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            long size = in.size();
+            if (size > BUFFER_SIZE) {
+                for (long pos = 0; pos < size; pos += MAP_SIZE) {
+                    md.update(in.map(FileChannel.MapMode.READ_ONLY, pos,
+                                     Math.min(MAP_SIZE, size - pos)));
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                    continue;
+                }
+                buffer.flip();
+                md.update(buffer);
             }
-            return result.toString();
+            Trace.read(size);
+            Trace.hashed(size);
+            return hex(md.digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** The size of the buffer files are streamed through. */
+    static final int BUFFER_SIZE = 64 << 10;
+
+    /** The largest region of a file mapped at once. */
+    static final long MAP_SIZE = 1L << 30;
+
+    /** Returns DIGEST as a hexadecimal numeral. */
+    static String hex(byte[] digest) {
+        Formatter result = new Formatter();
+        for (byte b : digest) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
@@ -94,11 +149,14 @@ class Utils {
      *  be a normal file.  Throws IllegalArgumentException
      *  in case of problems. */
     static byte[] readContents(File file) {
+        Trace.statted(1);
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            Trace.read(contents.length);
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -117,30 +175,127 @@ class Utils {
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
         try {
+            Trace.statted(1);
             if (file.isDirectory()) {
                 throw
                     new IllegalArgumentException("cannot overwrite directory");
             }
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            long written = 0;
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] bytes = (obj instanceof byte[])
+                    ? (byte[]) obj
+                    : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(bytes);
+                written += bytes.length;
             }
             str.close();
+            Trace.written(written);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Write CONTENTS to FILE as writeContents does, but into TMP first
+     *  and then rename TMP over FILE, so that readers see either its old or
+     *  its new contents and never a partly written file.  TMP must be on
+     *  the same file system as FILE.  Throws IllegalArgumentException in
+     *  case of problems. */
+    static void writeAtomically(File file, File tmp, Object... contents) {
+        writeContents(tmp, contents);
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a channel writing FILE from its start, creating or
+     *  truncating it as needed.  Throws IllegalArgumentException in case
+     *  of problems. */
+    static FileChannel writeChannel(File file) {
+        Trace.statted(1);
+        if (file.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                    StandardOpenOption.WRITE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append the contents of FILE to OUT.  The bytes are transferred
+     *  between the two channels, which lets the operating system copy them
+     *  without passing them through the Java heap.  If a transfer stops
+     *  making progress, the rest is copied through a buffer instead.
+     *  Throws IllegalArgumentException in case of problems, including FILE
+     *  shrinking or OUT accepting no more bytes during the copy. */
+    static void transferContents(File file, FileChannel out) {
+        Trace.statted(1);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                long transferred = in.transferTo(pos, size - pos, out);
+                if (transferred == 0) {
+                    break;
+                }
+                pos += transferred;
+            }
+            if (pos < size) {
+                copyThroughBuffer(in, pos, size, out);
+            }
+            Trace.read(size);
+            Trace.written(size);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copy bytes POS to SIZE of IN to OUT through a heap buffer. */
+    private static void copyThroughBuffer(FileChannel in, long pos, long size,
+                                          FileChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - pos, 1 << 16));
+        while (pos < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - pos));
+            int read = in.read(buffer, pos);
+            if (read < 0) {
+                throw new IllegalArgumentException("file shrank while being copied");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (out.write(buffer) == 0) {
+                    throw new IllegalArgumentException("cannot write any more bytes");
+                }
+            }
+            pos += read;
+        }
+    }
+
+    /** Copy the contents of SOURCE to DEST, creating or overwriting it as
+     *  needed, as for transferContents. */
+    static void copyContents(File source, File dest) {
+        try (FileChannel out = writeChannel(dest)) {
+            transferContents(source, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
         try {
+            Trace.read(file.length());
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
@@ -164,6 +319,7 @@ class Utils {
         new FilenameFilter() {
             @Override
             public boolean accept(File dir, String name) {
+                Trace.statted(1);
                 return new File(dir, name).isFile();
             }
         };
@@ -0,0 +1,343 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static gitlet.Utils.*;
+
+/**
+ * Change tracking for the working directory, so that status and add need
+ * not stat and hash every file.
+ *
+ * The watch command runs a watcher in the foreground. For as long as it
+ * runs it holds a lock on .gitlet/fsmonitor, which names its process and
+ * its log, and appends to .gitlet/fsmonitor-log the name of every working
+ * file a WatchService reports created, modified or deleted. Once the log
+ * grows past MAX_LOG_LENGTH the watcher replaces it with an empty one under
+ * a new id, so it stays small however long the watcher runs; commands then
+ * rebuild their snapshot once. Commands keep a snapshot of the
+ * working directory, the SHA-1 of each file by name, in
+ * .gitlet/fsmonitor-cache together with how much of the log it reflects,
+ * and refresh only the files logged since. The snapshot is rebuilt from
+ * scratch when a new log has been started or when events were lost, and
+ * not used at all unless the lock is held, the process it names is alive
+ * and the log is the one it names.
+ *
+ * Events arrive asynchronously, so before trusting the log a command
+ * creates a cookie file in .gitlet and waits for the watcher to log it:
+ * every change made before the cookie was created has been logged by then.
+ *
+ * @author Tsrigo
+ */
+class Watcher {
+    /**
+     * The file a running watcher keeps locked.
+     */
+    static final File STATE_FILE = join(Repository.GITLET_DIR, "fsmonitor");
+    /**
+     * The names of changed files, one per line, after a first line
+     * identifying the watcher that wrote them.
+     */
+    static final File LOG_FILE = join(Repository.GITLET_DIR, "fsmonitor-log");
+    /**
+     * The snapshot of the working directory.
+     */
+    static final File CACHE_FILE = join(Repository.GITLET_DIR, "fsmonitor-cache");
+    /**
+     * The longest wait, in milliseconds, for the watcher to log a cookie.
+     */
+    static final long COOKIE_TIMEOUT = 1000;
+    /**
+     * The length of log past which the watcher starts a new one.
+     */
+    static final long MAX_LOG_LENGTH = 1 << 20;
+    /**
+     * The byte of STATE_FILE a running watcher keeps locked, past its
+     * contents so that they can be read while it is locked.
+     */
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+    /**
+     * The prefix of cookie file names.
+     */
+    private static final String COOKIE_PREFIX = "fsmonitor-cookie-";
+    /**
+     * Log lines that are not file names start with a slash, which no file
+     * name contains.
+     */
+    private static final String OVERFLOW_LINE = "/overflow";
+    /**
+     * The length of the watcher id on the first line of the log.
+     */
+    private static final int SESSION_LENGTH = 36;
+
+    /**
+     * A snapshot of the working directory.
+     */
+    private static class Cache implements Serializable {
+        /**
+         * The serial version of the caches already written, kept so that
+         * they can still be read.
+         */
+        private static final long serialVersionUID = -2644664329501477386L;
+        /**
+         * The watcher whose log the snapshot follows.
+         */
+        private final String session;
+        /**
+         * The length of the log the snapshot reflects.
+         */
+        private long offset;
+        /**
+         * The SHA-1 of every plain file, by name.
+         */
+        private final HashMap<String, String> files = new HashMap<>();
+
+        Cache(String session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * Watches the working directory until the process is killed. Exits if
+     * another watcher is already running.
+     */
+    static void run() {
+        FileChannel state = null;
+        FileLock lock = null;
+        try {
+            state = FileChannel.open(STATE_FILE.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = state.tryLock(LOCK_POSITION, 1, false);
+        } catch (IOException | OverlappingFileLockException excp) {
+            lock = null;
+        }
+        if (lock == null) {
+            System.out.println("A watcher is already running.");
+            System.exit(0);
+        }
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Path cwd = Repository.CWD.toPath();
+            cwd.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Repository.GITLET_DIR.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE);
+            OutputStream log = startLog(state);
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    StringBuilder lines = new StringBuilder();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            lines.append(OVERFLOW_LINE).append('\n');
+                            continue;
+                        }
+                        String name = event.context().toString();
+                        if (key.watchable().equals(cwd)) {
+                            lines.append(name).append('\n');
+                        } else if (name.startsWith(COOKIE_PREFIX)) {
+                            lines.append('/').append(name).append('\n');
+                        }
+                    }
+                    key.reset();
+                    log.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                    log.flush();
+                    if (LOG_FILE.length() > MAX_LOG_LENGTH) {
+                        log.close();
+                        log = startLog(state);
+                    }
+                }
+            } finally {
+                log.close();
+            }
+        } catch (IOException excp) {
+            throw error("Cannot watch %s: %s", Repository.CWD, excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replaces the log with an empty one under a new id, records this
+     * process and that id in STATE, and returns a stream appending to the
+     * new log.
+     */
+    private static OutputStream startLog(FileChannel state) throws IOException {
+        String session = UUID.randomUUID().toString();
+        writeAtomically(LOG_FILE, join(Repository.GITLET_DIR, "fsmonitor-log.tmp"),
+                session + "\n");
+        byte[] owner = (ProcessHandle.current().pid() + " " + session + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        state.truncate(0);
+        state.write(ByteBuffer.wrap(owner), 0);
+        return Files.newOutputStream(LOG_FILE.toPath(), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the SHA-1 of every plain file in the working directory, by
+     * name, or null if no watcher is running. Only files logged as changed
+     * since the last call are read.
+     */
+    static HashMap<String, String> snapshot() {
+        String live = LOG_FILE.isFile() ? liveSession() : null;
+        if (live == null || !sync()) {
+            return null;
+        }
+        byte[] header = readFrom(0, SESSION_LENGTH + 1);
+        if (header.length <= SESSION_LENGTH) {
+            return null;
+        }
+        String session = new String(header, 0, SESSION_LENGTH, StandardCharsets.UTF_8);
+        if (!session.equals(live)) {
+            return null;
+        }
+        Cache cache = CACHE_FILE.isFile() ? readObject(CACHE_FILE, Cache.class) : null;
+        boolean rescan = cache == null || !cache.session.equals(session);
+        if (rescan) {
+            cache = new Cache(session);
+            cache.offset = header.length;
+        }
+        byte[] fresh = readFrom(cache.offset, Integer.MAX_VALUE);
+        int length = fresh.length;
+        while (length > 0 && fresh[length - 1] != '\n') {
+            length -= 1;
+        }
+        long end = cache.offset + length;
+        Set<String> dirty = new HashSet<>();
+        for (String line : new String(fresh, 0, length, StandardCharsets.UTF_8).split("\n")) {
+            if (line.equals(OVERFLOW_LINE)) {
+                rescan = true;
+            } else if (!line.isEmpty() && !line.startsWith("/")) {
+                dirty.add(line);
+            }
+        }
+        if (rescan) {
+            cache.files.clear();
+            List<String> names = plainFilenamesIn(Repository.CWD);
+            dirty.addAll(names == null ? List.of() : names);
+        }
+        for (String name : dirty) {
+            File file = join(Repository.CWD, name);
+            if (file.isFile()) {
+                cache.files.put(name, sha1(file));
+            } else {
+                cache.files.remove(name);
+            }
+        }
+        if (rescan || cache.offset != end) {
+            cache.offset = end;
+            save(cache);
+        }
+        return cache.files;
+    }
+
+    /**
+     * Returns the id of the log of the running watcher, or null if none is
+     * running: the lock on STATE_FILE must be held and the process STATE_FILE
+     * names must be alive, so that a watcher that died without releasing
+     * its lock is not trusted.
+     */
+    private static String liveSession() {
+        try (FileChannel state = FileChannel.open(STATE_FILE.toPath(), StandardOpenOption.WRITE)) {
+            FileLock lock = state.tryLock(LOCK_POSITION, 1, false);
+            if (lock != null) {
+                lock.release();
+                return null;
+            }
+        } catch (OverlappingFileLockException excp) {
+            // Held by a watcher in this process.
+        } catch (IOException excp) {
+            return null;
+        }
+        String[] owner = readContentsAsString(STATE_FILE).trim().split(" ");
+        if (owner.length != 2) {
+            return null;
+        }
+        try {
+            boolean alive = ProcessHandle.of(Long.parseLong(owner[0]))
+                    .map(ProcessHandle::isAlive).orElse(false);
+            return alive ? owner[1] : null;
+        } catch (NumberFormatException excp) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a cookie and waits for the watcher to log it. Returns false
+     * if it did not within COOKIE_TIMEOUT.
+     */
+    private static boolean sync() {
+        String name = COOKIE_PREFIX + ProcessHandle.current().pid() + "-" + System.nanoTime();
+        long start = LOG_FILE.length();
+        File cookie = join(Repository.GITLET_DIR, name);
+        writeContents(cookie, "");
+        try {
+            long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT;
+            while (System.currentTimeMillis() < deadline) {
+                String logged = new String(readFrom(start, Integer.MAX_VALUE), StandardCharsets.UTF_8);
+                if (logged.contains("/" + name + "\n")) {
+                    return true;
+                }
+                Thread.sleep(1);
+            }
+            return false;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /**
+     * Returns at most MAX bytes of the log from byte OFFSET on.
+     */
+    private static byte[] readFrom(long offset, int max) {
+        try (FileChannel in = FileChannel.open(LOG_FILE.toPath(), StandardOpenOption.READ)) {
+            long available = Math.max(0, in.size() - offset);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(max, available));
+            in.position(offset);
+            while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                continue;
+            }
+            Trace.read(buffer.position());
+            return buffer.array();
+        } catch (IOException excp) {
+            throw error("Cannot read %s: %s", LOG_FILE, excp.getMessage());
+        }
+    }
+
+    /**
+     * Writes CACHE to a temporary file and renames it over CACHE_FILE, so
+     * that concurrent commands never see a partly written snapshot.
+     */
+    private static void save(Cache cache) {
+        File tmp = join(Repository.GITLET_DIR, "fsmonitor-cache." + ProcessHandle.current().pid());
+        writeObject(tmp, cache);
+        try {
+            Files.move(tmp.toPath(), CACHE_FILE.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            tmp.delete();
+        }
+    }
+}